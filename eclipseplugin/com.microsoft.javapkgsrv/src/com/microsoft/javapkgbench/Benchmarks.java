@@ -0,0 +1,466 @@
+// Copyright (c) Microsoft.  All Rights Reserved.  Licensed under the MIT License.  See LICENSE file in the project root for license information.
+
+package com.microsoft.javapkgbench;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.microsoft.javapkgsrv.ClientProxy;
+import com.microsoft.javapkgsrv.JavaParser;
+import com.microsoft.javapkgsrv.PipeChannel;
+import com.microsoft.javapkgsrv.Protocol;
+import com.microsoft.javapkgsrv.Protocol.Request.FileParseRequest;
+import com.microsoft.javapkgsrv.Protocol.Request.RequestType;
+import com.microsoft.javapkgsrv.Protocol.Response.ResponseType;
+import com.microsoft.javapkgsrv.RequestMetrics;
+import com.microsoft.javapkgsrv.SymbolIndex;
+import com.microsoft.javapkgsrv.Protocol.Response.BatchParseResponse;
+import com.microsoft.javapkgsrv.Protocol.Response.OutlineResultResponse;
+
+public class Benchmarks {
+
+	public static void logo()
+	{
+		System.out.println("Java Package Server benchmarks");
+		System.out.println();
+	}
+	public static void runHelp() 
+	{
+		System.out.println("Supported benchmarks:");
+		System.out.println("\t-help: displays this help string");
+		System.out.println("\t-outline fileName [iterations] : measures eager vs. lazy outline generation for a java source file");
+		System.out.println("\t-replay recording [-workers N] [-paced] : replays requests captured with javapkgsrv -capture against");
+		System.out.println("\t\tthe workspace given with -data and reports latency and allocation per request type;");
+		System.out.println("\t\t-paced keeps the recorded gaps between requests instead of sending them back to back");
+		System.out.println("\t-batchParse folder : parses every java file under folder (part of the workspace given with -data)");
+		System.out.println("\t\tin one BatchParse and checks that every id handed out still resolves afterwards;");
+		System.out.println("\t\tuse a folder with more files than the AST cache holds (32), such as the Mekanism sample");
+		System.out.println("\t-pipe [fifoName] : measures writing responses while the reading thread is blocked waiting for a request,");
+		System.out.println("\t\tover the tcp transport and, if given, a FIFO made with mkfifo (same code path as Windows named pipes)");
+		System.out.println("\t-symbolSearch [iterations] : indexes the workspace given with -data and its libraries, then measures");
+		System.out.println("\t\tSymbolSearch for exact, prefix, camel case, substring and subsequence queries (target: under 50ms)");
+	}
+
+	public static void runTaskNotRecognised(String task) 
+	{
+		System.err.println("Error: Benchmark not supported: " + task);
+		runHelp();
+	}
+	public static void invalidParameters(String task) 
+	{
+		System.err.println("Error: Invalid parameters specified for benchmark: " + task);
+		runHelp();
+	}
+	public static void outline(String fileName, int iterations) throws IOException
+	{
+		String contents = new String(Files.readAllBytes(Paths.get(fileName)), StandardCharsets.UTF_8);
+
+		// Bindings are irrelevant to the outline, so the file does not need to be part of a workspace
+		ASTParser parser = ASTParser.newParser(AST.JLS8);
+		parser.setKind(ASTParser.K_COMPILATION_UNIT);
+		parser.setSource(contents.toCharArray());
+		CompilationUnit cu = (CompilationUnit)parser.createAST(null);
+
+		System.out.println(fileName + ": " + contents.length() + " chars, " + iterations + " iterations");
+		measureOutline("eager", cu, false, iterations);
+		measureOutline("lazy", cu, true, iterations);
+	}
+	private static void measureOutline(String label, CompilationUnit cu, boolean lazy, int iterations)
+	{
+		for(int i = 0; i < Math.max(1, iterations / 5); ++i)
+			JavaParser.CreateOutline(cu, lazy); // warm up
+
+		long[] samples = new long[iterations];
+		List<OutlineResultResponse.Outline> outline = null;
+		for(int i = 0; i < iterations; ++i)
+		{
+			long start = System.nanoTime();
+			outline = JavaParser.CreateOutline(cu, lazy);
+			samples[i] = System.nanoTime() - start;
+		}
+		int responseBytes = OutlineResultResponse.newBuilder()
+				.addAllOutline(outline)
+				.build()
+				.getSerializedSize();
+
+		System.out.println(String.format("\t%-6s items=%d bytes=%d %s", label, outline.size(), responseBytes, formatLatency(samples)));
+	}
+	public static void replay(String recording, int workers, final boolean paced) throws Exception
+	{
+		final List<Long> timestamps = new ArrayList<Long>();
+		final List<Protocol.Request> requests = new ArrayList<Protocol.Request>();
+		InputStream in = new BufferedInputStream(new FileInputStream(recording));
+		try
+		{
+			CodedInputStream recorded = CodedInputStream.newInstance(in);
+			recorded.setSizeLimit(Integer.MAX_VALUE);
+			while (!recorded.isAtEnd())
+			{
+				timestamps.add(recorded.readRawVarint64());
+				requests.add(Protocol.Request.parseFrom(recorded.readRawBytes(recorded.readRawVarint32())));
+				recorded.resetSizeCounter();
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+		if (requests.isEmpty() || requests.get(requests.size() - 1).getRequestType() != RequestType.Bye)
+		{
+			// Bye makes the server return from Run once everything has been answered
+			timestamps.add(timestamps.isEmpty() ? 0 : timestamps.get(timestamps.size() - 1));
+			requests.add(Protocol.Request.newBuilder().setRequestType(RequestType.Bye).build());
+		}
+		System.out.println(recording + ": " + requests.size() + " requests, " + (workers > 0 ? workers + " workers" : "serial") + (paced ? ", paced" : ""));
+
+		// The server reads the recording through a pipe fed by this thread and its responses are discarded
+		final PipedOutputStream feed = new PipedOutputStream();
+		PipedInputStream serverIn = new PipedInputStream(feed, 1024 * 1024);
+		OutputStream serverOut = new OutputStream()
+		{
+			@Override
+			public void write(int b)
+			{
+			}
+			@Override
+			public void write(byte[] b, int off, int len)
+			{
+			}
+		};
+		ClientProxy proxy = new ClientProxy(new PipeChannel(serverIn, serverOut), workers);
+		proxy.DisableBackgroundServices(); // only the recorded requests should be timed
+
+		final Map<RequestType, List<long[]>> samples = new EnumMap<RequestType, List<long[]>>(RequestType.class);
+		boolean allocations = proxy.GetMetrics().TrackAllocations();
+		proxy.GetMetrics().SetListener(new RequestMetrics.Listener()
+		{
+			@Override
+			public void Processed(RequestType requestType, long queueNanos, long processNanos, long allocatedBytes)
+			{
+				List<long[]> list = samples.get(requestType);
+				if (list == null)
+				{
+					list = new ArrayList<long[]>();
+					samples.put(requestType, list);
+				}
+				list.add(new long[] { queueNanos + processNanos, allocatedBytes });
+			}
+		});
+
+		Thread feeder = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					CodedOutputStream out = CodedOutputStream.newInstance(feed);
+					long start = System.nanoTime();
+					for(int i = 0; i < requests.size(); ++i)
+					{
+						long wait = (start + timestamps.get(i) * 1000 - System.nanoTime()) / 1000000;
+						if (paced && wait > 0)
+							Thread.sleep(wait);
+
+						out.writeRawVarint32(requests.get(i).getSerializedSize());
+						requests.get(i).writeTo(out);
+						out.flush();
+					}
+					feed.close();
+				}
+				catch(Exception e)
+				{
+					e.printStackTrace();
+				}
+			}
+		}, "javapkgbench-replay");
+		feeder.start();
+
+		long start = System.nanoTime();
+		proxy.Run();
+		long elapsed = System.nanoTime() - start;
+		feeder.join();
+
+		System.out.println(String.format("total %.3fs", elapsed / 1e9));
+		for(Map.Entry<RequestType, List<long[]>> entry: samples.entrySet())
+		{
+			long[] latency = new long[entry.getValue().size()];
+			long allocated = 0;
+			for(int i = 0; i < latency.length; ++i)
+			{
+				latency[i] = entry.getValue().get(i)[0];
+				allocated += entry.getValue().get(i)[1];
+			}
+			System.out.println(String.format("\t%-24s %s%s", entry.getKey(), formatLatency(latency),
+					allocations ? String.format(" alloc/request=%dKB", allocated / latency.length / 1024) : ""));
+		}
+	}
+	public static void batchParse(String folder) throws Exception
+	{
+		List<FileParseRequest> files = new ArrayList<FileParseRequest>();
+		collectSources(new File(folder), files);
+
+		JavaParser parser = new JavaParser();
+		parser.Init();
+
+		final List<Integer> ids = new ArrayList<Integer>();
+		final int[] failed = new int[1];
+		long start = System.nanoTime();
+		parser.ProcessBatchParseRequest(files, true, new JavaParser.BatchParseListener()
+		{
+			@Override
+			public void Accept(BatchParseResponse.FileResult result)
+			{
+				if (result.getStatus())
+					ids.add(result.getFileIdentifier().getId());
+				else
+					++failed[0];
+			}
+		}, new NullProgressMonitor());
+		long elapsed = System.nanoTime() - start;
+
+		int lost = 0;
+		for(int id: ids)
+		{
+			if (!parser.HasUnit(id))
+				++lost;
+			parser.ProcessDisposeFileRequest(id);
+		}
+		System.out.println(String.format("%s: %d files parsed in %.3fs, %d failed", folder, files.size(), elapsed / 1e9, failed[0]));
+		if (lost > 0)
+			System.out.println("\tFAILED: " + lost + " of " + ids.size() + " ids were evicted before the client could use them");
+		else
+			System.out.println("\tall " + ids.size() + " ids still resolve");
+	}
+	private static void collectSources(File folder, List<FileParseRequest> files) throws IOException
+	{
+		File[] children = folder.listFiles();
+		if (children == null)
+			return;
+
+		for(File child: children)
+		{
+			if (child.isDirectory())
+				collectSources(child, files);
+			else if (child.getName().endsWith(".java"))
+				files.add(FileParseRequest.newBuilder()
+						.setFileName(child.getAbsolutePath())
+						.setFileParseContents(new String(Files.readAllBytes(child.toPath()), StandardCharsets.UTF_8))
+						.build());
+		}
+	}
+	public static void pipe(String fifoName, int iterations) throws Exception
+	{
+		System.out.println("Writing " + iterations + " responses while a read is pending");
+
+		// This thread plays the client and echoes every response back to the server as a request
+		ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+		try
+		{
+			PipeChannel channel = new PipeChannel("tcp:" + server.getLocalPort());
+			channel.Init();
+			final Socket client = server.accept();
+			try
+			{
+				Thread echo = new Thread(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						try
+						{
+							byte[] buffer = new byte[4096];
+							int read;
+							while ((read = client.getInputStream().read(buffer)) >= 0)
+								client.getOutputStream().write(buffer, 0, read);
+						}
+						catch(IOException e)
+						{
+							// closed at the end of the measurement
+						}
+					}
+				}, "javapkgbench-pipe-echo");
+				echo.setDaemon(true);
+				echo.start();
+
+				measurePipeWrites("tcp", channel, iterations);
+			}
+			finally
+			{
+				client.close();
+				channel.Disconnect();
+			}
+		}
+		finally
+		{
+			server.close();
+		}
+
+		if (fifoName != null)
+		{
+			// Opened for reading and writing, the FIFO hands every response straight back to the same channel
+			PipeChannel channel = new PipeChannel(new RandomAccessFile(fifoName, "rw"));
+			try
+			{
+				measurePipeWrites("fifo", channel, iterations);
+			}
+			finally
+			{
+				channel.Disconnect();
+			}
+		}
+	}
+	private static void measurePipeWrites(String label, final PipeChannel channel, final int iterations) throws InterruptedException
+	{
+		final Semaphore received = new Semaphore(0);
+		Thread reader = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					while (true)
+					{
+						channel.ReadMessage();
+						received.release();
+					}
+				}
+				catch(IOException e)
+				{
+					// closed at the end of the measurement
+				}
+			}
+		}, "javapkgbench-pipe-reader");
+		reader.setDaemon(true);
+		reader.start();
+
+		final long[] samples = new long[iterations];
+		final int[] written = new int[1];
+		Thread writer = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				// Echoed back it parses as a Bye request, which is all the reader needs
+				Protocol.Response response = Protocol.Response.newBuilder()
+						.setResponseType(ResponseType.Bye)
+						.build();
+				try
+				{
+					for(int i = 0; i < iterations; ++i)
+					{
+						Thread.sleep(1); // let the reader block in ReadMessage again
+						long start = System.nanoTime();
+						channel.WriteMessage(response);
+						samples[i] = System.nanoTime() - start;
+						written[0] = i + 1;
+						received.acquire();
+					}
+				}
+				catch(Exception e)
+				{
+					e.printStackTrace();
+				}
+			}
+		}, "javapkgbench-pipe-writer");
+		writer.setDaemon(true);
+		writer.start();
+		writer.join(10000 + iterations * 10L);
+
+		if (writer.isAlive() || written[0] < iterations)
+			System.out.println(String.format("\t%-6s FAILED: %d of %d responses written, the next one is stuck behind the pending read", label, written[0], iterations));
+		else
+			System.out.println(String.format("\t%-6s %s", label, formatLatency(samples)));
+	}
+	public static void symbolSearch(int iterations) throws Exception
+	{
+		JavaParser parser = new JavaParser();
+		parser.Init();
+
+		SymbolIndex index = new SymbolIndex(parser);
+		long start = System.nanoTime();
+		index.Start();
+		try
+		{
+			// A snapshot from an earlier run is searchable at once; wait for the rescan so every library is in
+			while (!index.IsComplete())
+			{
+				if (System.nanoTime() - start > 600 * 1000000000L)
+				{
+					System.out.println("FAILED: index not complete after 600s");
+					return;
+				}
+				Thread.sleep(100);
+			}
+			System.out.println(String.format("Index complete after %.3fs, %d iterations per query", (System.nanoTime() - start) / 1e9, iterations));
+
+			String[][] queries = {
+				{ "exact", "String" },
+				{ "prefix", "Transmit" },
+				{ "camel", "TNR" },
+				{ "substring", "network" },
+				{ "subseq", "gtnet" },
+				{ "1 char", "g" }
+			};
+			for(String[] query: queries)
+			{
+				for(int i = 0; i < Math.max(1, iterations / 5); ++i)
+					index.Search(query[1], 50, false); // warm up
+
+				long[] samples = new long[iterations];
+				int results = 0;
+				for(int i = 0; i < iterations; ++i)
+				{
+					long searchStart = System.nanoTime();
+					results = index.Search(query[1], 50, false).size();
+					samples[i] = System.nanoTime() - searchStart;
+				}
+				System.out.println(String.format("\t%-10s %-10s results=%d %s", query[0], query[1], results, formatLatency(samples)));
+			}
+		}
+		finally
+		{
+			index.Shutdown();
+		}
+	}
+	static String formatLatency(long[] samplesNanos)
+	{
+		if (samplesNanos.length == 0)
+			return "n=0";
+
+		long[] sorted = Arrays.copyOf(samplesNanos, samplesNanos.length);
+		Arrays.sort(sorted);
+		return String.format("n=%d p50=%.3fms p99=%.3fms max=%.3fms",
+				sorted.length,
+				sorted[(int)((sorted.length - 1) * 0.50)] / 1e6,
+				sorted[(int)((sorted.length - 1) * 0.99)] / 1e6,
+				sorted[sorted.length - 1] / 1e6);
+	}
+}
@@ -0,0 +1,69 @@
+// Copyright (c) Microsoft.  All Rights Reserved.  Licensed under the MIT License.  See LICENSE file in the project root for license information.
+
+package com.microsoft.javapkgbench;
+
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+
+public class RunBenchmark implements IApplication {
+
+	@Override
+	public Object start(IApplicationContext context) throws Exception {
+		String[] args = (String[]) context.getArguments().get(
+				"application.args");
+
+		String task = args.length >= 1 ? args[0] : "-help";
+
+		Benchmarks.logo();
+		if (task.equalsIgnoreCase("-help")) {
+			Benchmarks.runHelp();
+		} else if (task.equalsIgnoreCase("-outline")) {
+			if (args.length < 2 || args.length > 3)
+				Benchmarks.invalidParameters(task);
+
+			String fileName = args[1];
+			int iterations = args.length == 3 ? Integer.parseInt(args[2]) : 50;
+
+			Benchmarks.outline(fileName, iterations);
+		} else if (task.equalsIgnoreCase("-replay")) {
+			if (args.length < 2)
+				Benchmarks.invalidParameters(task);
+
+			String recording = args[1];
+			int workers = 0;
+			boolean paced = false;
+			for (int i = 2; i < args.length; ++i) {
+				if (args[i].equalsIgnoreCase("-workers") && i + 1 < args.length)
+					workers = Integer.parseInt(args[++i]);
+				else if (args[i].equalsIgnoreCase("-paced"))
+					paced = true;
+				else
+					Benchmarks.invalidParameters(task);
+			}
+
+			Benchmarks.replay(recording, workers, paced);
+		} else if (task.equalsIgnoreCase("-batchParse")) {
+			if (args.length != 2)
+				Benchmarks.invalidParameters(task);
+
+			Benchmarks.batchParse(args[1]);
+		} else if (task.equalsIgnoreCase("-pipe")) {
+			if (args.length > 2)
+				Benchmarks.invalidParameters(task);
+
+			Benchmarks.pipe(args.length == 2 ? args[1] : null, 200);
+		} else if (task.equalsIgnoreCase("-symbolSearch")) {
+			if (args.length > 2)
+				Benchmarks.invalidParameters(task);
+
+			Benchmarks.symbolSearch(args.length == 2 ? Integer.parseInt(args[1]) : 50);
+		} else {
+			Benchmarks.runTaskNotRecognised(task);
+		}
+		return null;
+	}
+
+	@Override
+	public void stop() {
+	}
+}
@@ -2,6 +2,9 @@
 
 package com.microsoft.javapkgbuild;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.eclipse.equinox.app.IApplication;
 import org.eclipse.equinox.app.IApplicationContext;
 
@@ -26,13 +29,24 @@ public class RunTask implements IApplication {
 			String projectName = args[1];
 			Tasks.displayReferences(projectName);
 		} else if (task.equalsIgnoreCase("-exportReferences")) {
-			if (args.length != 3)
+			if (args.length < 3 || args.length % 2 == 0)
 				Tasks.invalidParameters(task);
 
-			String projectName = args[1];
-			String outputFileName = args[2];
+			// Any number of projectName outputFileName pairs, all exported from this one workspace launch
+			List<String> projectNames = new ArrayList<String>();
+			List<String> outputFileNames = new ArrayList<String>();
+			for (int i = 1; i + 1 < args.length; i += 2) {
+				projectNames.add(args[i]);
+				outputFileNames.add(args[i + 1]);
+			}
+
+			Tasks.exportReferences(projectNames, outputFileNames);
+		} else if (task.equalsIgnoreCase("-exportAllReferences")) {
+			if (args.length != 2)
+				Tasks.invalidParameters(task);
 
-			Tasks.exportReferences(projectName, outputFileName);
+			String outputFolder = args[1];
+			Tasks.exportAllReferences(outputFolder);
 		} else {
 			Tasks.runTaskNotRecognised(task);
 		}
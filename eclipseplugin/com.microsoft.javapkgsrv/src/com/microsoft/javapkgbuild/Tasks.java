@@ -2,7 +2,19 @@
 
 package com.microsoft.javapkgbuild;
 
+import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -24,6 +36,7 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 public class Tasks {
+	private static final Pattern FingerprintAttribute = Pattern.compile("fingerprint=\"([0-9a-f]+)\"");
 
 	public static void logo()
 	{
@@ -36,7 +49,9 @@ public class Tasks {
 		System.out.println("\t-help: displays this help string");
 		System.out.println("\t-displayProjects: lists all projects from the loaded workspace");
 		System.out.println("\t-displayReferences projectName : lists classpath for the specified project");
-		System.out.println("\t-exportReferences projectName outputFileName : stores classpath of the specified project in an xml output file");
+		System.out.println("\t-exportReferences projectName outputFileName [projectName outputFileName ...] : stores classpath of the specified projects in xml output files;");
+		System.out.println("\t\toutput files whose classpath did not change are left untouched");
+		System.out.println("\t-exportAllReferences outputFolder : stores classpath of every java project as outputFolder\\projectName.classpath.xml");
 	}
 
 	public static void runTaskNotRecognised(String task) 
@@ -71,52 +86,152 @@ public class Tasks {
 		}
 	}
 	public static void exportReferences(String projectName, String outputFileName) throws JavaModelException 
+	{
+		exportReferences(Arrays.asList(projectName), Arrays.asList(outputFileName));
+	}
+	public static void exportAllReferences(String outputFolder) throws JavaModelException 
+	{
+		List<String> projectNames = new ArrayList<String>();
+		List<String> outputFileNames = new ArrayList<String>();
+		IWorkspaceRoot workspaceRoot = ResourcesPlugin.getWorkspace().getRoot();
+		for(IJavaProject javaProject: JavaCore.create(workspaceRoot).getJavaProjects())
+		{
+			projectNames.add(javaProject.getElementName());
+			outputFileNames.add(new File(outputFolder, javaProject.getElementName() + ".classpath.xml").getPath());
+		}
+		new File(outputFolder).mkdirs();
+		exportReferences(projectNames, outputFileNames);
+	}
+	public static void exportReferences(List<String> projectNames, List<String> outputFileNames)
 	{
 		try
 		{
-			IWorkspaceRoot workspaceRoot = ResourcesPlugin.getWorkspace().getRoot();
-			IProject project = workspaceRoot.getProject(projectName);
-			IJavaProject javaProject = JavaCore.create(project);
-			
-			DocumentBuilderFactory xFactory = DocumentBuilderFactory.newInstance();
-			DocumentBuilder builder = xFactory.newDocumentBuilder();
-			Document doc = builder.newDocument();
-			
-			Element mainRoot = doc.createElement("classpath");
-			mainRoot.setAttribute("projectName", projectName);
-			doc.appendChild(mainRoot);
-			
-			IClasspathEntry[] classPathList = javaProject.getResolvedClasspath(true);
-			for(IClasspathEntry cp: classPathList)
-			{
-				Element cpNode = doc.createElement("classpathentry");
-				cpNode.setAttribute("path", cp.getPath().toOSString());
-				cpNode.setAttribute("kind", getClassPathType(cp));
-				cpNode.setAttribute("exported", Boolean.toString(cp.isExported()));
-				
-				IPath sourceFolder = cp.getSourceAttachmentPath();
-				if (cp.getEntryKind() == IClasspathEntry.CPE_LIBRARY && sourceFolder != null)
-					cpNode.setAttribute("sourcepath", sourceFolder.toOSString());
-				
-				mainRoot.appendChild(cpNode);
-			}
-			
+			DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
 			Transformer transformer = TransformerFactory.newInstance().newTransformer();
 			transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-			DOMSource source = new DOMSource(doc);
-			
-			FileOutputStream fos = new FileOutputStream(outputFileName);			
-			StreamResult outFile = new StreamResult(fos);
-			transformer.transform(source, outFile);
-			fos.close();
-			
-			System.out.println("Output file is: " + outputFileName);
+
+			int written = 0;
+			for(int i = 0; i < projectNames.size(); ++i)
+			{
+				try
+				{
+					if (exportReferences(builder, transformer, projectNames.get(i), outputFileNames.get(i)))
+						++written;
+				}
+				catch(Exception e)
+				{
+					// One broken project should not keep the others from being exported
+					System.err.println("Error: Cannot export references of project " + projectNames.get(i));
+					e.printStackTrace(System.err);
+				}
+			}
+			if (projectNames.size() > 1)
+				System.out.println(written + " of " + projectNames.size() + " output files written, the rest are up to date");
 		}
 		catch(Exception e)
 		{
 			e.printStackTrace(System.err);
 		}
 	}
+	// Returns false if the output file already describes the same resolved classpath
+	private static boolean exportReferences(DocumentBuilder builder, Transformer transformer, String projectName, String outputFileName) throws Exception 
+	{
+		IWorkspaceRoot workspaceRoot = ResourcesPlugin.getWorkspace().getRoot();
+		IProject project = workspaceRoot.getProject(projectName);
+		IJavaProject javaProject = JavaCore.create(project);
+		IClasspathEntry[] classPathList = javaProject.getResolvedClasspath(true);
+
+		String fingerprint = getFingerprint(projectName, classPathList);
+		if (fingerprint.equals(readFingerprint(outputFileName)))
+		{
+			System.out.println("Output file is up to date: " + outputFileName);
+			return false;
+		}
+
+		Document doc = builder.newDocument();
+		
+		Element mainRoot = doc.createElement("classpath");
+		mainRoot.setAttribute("projectName", projectName);
+		mainRoot.setAttribute("fingerprint", fingerprint);
+		doc.appendChild(mainRoot);
+		
+		for(IClasspathEntry cp: classPathList)
+		{
+			Element cpNode = doc.createElement("classpathentry");
+			cpNode.setAttribute("path", cp.getPath().toOSString());
+			cpNode.setAttribute("kind", getClassPathType(cp));
+			cpNode.setAttribute("exported", Boolean.toString(cp.isExported()));
+			
+			IPath sourceFolder = cp.getSourceAttachmentPath();
+			if (cp.getEntryKind() == IClasspathEntry.CPE_LIBRARY && sourceFolder != null)
+				cpNode.setAttribute("sourcepath", sourceFolder.toOSString());
+			
+			mainRoot.appendChild(cpNode);
+		}
+		
+		DOMSource source = new DOMSource(doc);
+		
+		// Write next to the output file and rename it over the old one, so an interrupted export can never leave
+		// behind a truncated file whose fingerprint says it is up to date
+		File outputFile = new File(outputFileName).getAbsoluteFile();
+		File tempFile = File.createTempFile(outputFile.getName(), ".tmp", outputFile.getParentFile());
+		try
+		{
+			FileOutputStream fos = new FileOutputStream(tempFile);
+			try
+			{
+				transformer.transform(source, new StreamResult(fos));
+			}
+			finally
+			{
+				fos.close();
+			}
+			try
+			{
+				Files.move(tempFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch(AtomicMoveNotSupportedException e)
+			{
+				Files.move(tempFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally
+		{
+			Files.deleteIfExists(tempFile.toPath()); // only still there if writing or renaming failed
+		}
+		
+		System.out.println("Output file is: " + outputFileName);
+		return true;
+	}
+	// Hash of everything written to the output file, so unchanged classpaths can be detected without rewriting it
+	private static String getFingerprint(String projectName, IClasspathEntry[] classPathList) throws Exception
+	{
+		MessageDigest digest = MessageDigest.getInstance("SHA-1");
+		StringBuilder text = new StringBuilder(projectName).append('\n');
+		for(IClasspathEntry cp: classPathList)
+		{
+			IPath sourceFolder = cp.getSourceAttachmentPath();
+			text.append(getClassPathType(cp)).append('|')
+				.append(cp.getPath().toOSString()).append('|')
+				.append(cp.isExported()).append('|')
+				.append(cp.getEntryKind() == IClasspathEntry.CPE_LIBRARY && sourceFolder != null ? sourceFolder.toOSString() : "")
+				.append('\n');
+		}
+		StringBuilder hash = new StringBuilder();
+		for(byte b: digest.digest(text.toString().getBytes(StandardCharsets.UTF_8)))
+			hash.append(String.format("%02x", b));
+		return hash.toString();
+	}
+	private static String readFingerprint(String outputFileName) throws IOException
+	{
+		File file = new File(outputFileName);
+		if (!file.exists())
+			return null;
+
+		String contents = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+		Matcher matcher = FingerprintAttribute.matcher(contents);
+		return matcher.find() ? matcher.group(1) : null;
+	}
 	
 	private static String getClassPathType(IClasspathEntry cp) 
 	{
@@ -2,6 +2,9 @@
 
 package com.microsoft.javapkgsrv;
 
+import java.io.File;
+
+import org.eclipse.core.runtime.Platform;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
 
@@ -13,12 +16,19 @@ public class Activator implements BundleActivator {
 		return context;
 	}
 
+	/*
+	 * Returns a file in the plug-in's state location in the workspace metadata.
+	 */
+	static File getStateFile(String fileName) {
+		return Platform.getStateLocation(context.getBundle()).append(fileName).toFile();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.osgi.framework.BundleActivator#start(org.osgi.framework.BundleContext)
 	 */
 	public void start(BundleContext bundleContext) throws Exception {
-		System.out.println(">> com.microsoft.javapkgsrv started");
+		Log.Info(">> com.microsoft.javapkgsrv started");
 		Activator.context = bundleContext;
 	}
 
@@ -27,7 +37,7 @@ public class Activator implements BundleActivator {
 	 * @see org.osgi.framework.BundleActivator#stop(org.osgi.framework.BundleContext)
 	 */
 	public void stop(BundleContext bundleContext) throws Exception {
-		System.out.println(">> com.microsoft.javapkgsrv stopped");
+		Log.Info(">> com.microsoft.javapkgsrv stopped");
 		Activator.context = null;
 	}
 
@@ -0,0 +1,250 @@
+// Copyright (c) Microsoft.  All Rights Reserved.  Licensed under the MIT License.  See LICENSE file in the project root for license information.
+
+package com.microsoft.javapkgsrv;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaModel;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+
+import com.microsoft.javapkgsrv.Protocol.Response.ArchiveRefreshStatusResponse;
+import com.microsoft.javapkgsrv.Protocol.Response.ResponseType;
+
+// Refreshes the external archives on the classpath of every project on a background thread, so the
+// server answers requests while jars are being rescanned. The timestamp and size of each archive are
+// persisted after it has been refreshed; archives that still match the snapshot are skipped on restart.
+public class ArchiveRefresher {
+	private static final String SnapshotFileName = "archives.snapshot";
+
+	private JavaParser Parser = null;
+	private PipeChannel Pipe = null;
+	private IProgressMonitor Monitor = new NullProgressMonitor();
+	private boolean Subscribed = false;
+	private boolean Complete = false;
+	private int Refreshed = 0;
+	private int ToRefresh = 0;
+	private int Unchanged = 0;
+	private String CurrentArchive = null;
+
+	public ArchiveRefresher(JavaParser parser, PipeChannel pipe)
+	{
+		Parser = parser;
+		Pipe = pipe;
+	}
+	public void Start()
+	{
+		Thread worker = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				Refresh();
+			}
+		}, "javapkgsrv-archive-refresh");
+		worker.setDaemon(true);
+		worker.start();
+	}
+	public void Shutdown()
+	{
+		Monitor.setCanceled(true);
+	}
+	public synchronized ArchiveRefreshStatusResponse GetStatus(boolean subscribe)
+	{
+		if (subscribe && !Complete)
+			Subscribed = true;
+		return CreateStatus();
+	}
+	private void Refresh()
+	{
+		File snapshotFile = GetSnapshotFile();
+		Properties previous = LoadSnapshot(snapshotFile);
+		Properties current = new Properties();
+		try
+		{
+			Log.Info("Updating external archives...");
+			List<IPackageFragmentRoot> changed = new ArrayList<IPackageFragmentRoot>();
+			for(IPackageFragmentRoot root: GetExternalArchives(Parser.JavaModel))
+			{
+				String path = root.getPath().toOSString();
+				String stamp = GetStamp(root.getPath().toFile());
+				if (stamp.equals(previous.getProperty(path)))
+					current.setProperty(path, stamp);
+				else
+					changed.add(root);
+			}
+			synchronized(this)
+			{
+				ToRefresh = changed.size();
+				Unchanged = current.size();
+			}
+			Log.Info(changed.size() + " external archives changed, " + current.size() + " unchanged");
+			Notify();
+
+			for(IPackageFragmentRoot root: changed)
+			{
+				if (Monitor.isCanceled())
+					break;
+
+				String path = root.getPath().toOSString();
+				synchronized(this)
+				{
+					CurrentArchive = path;
+				}
+				// JDT refreshes every project referencing the archive, so one root per path is enough
+				Parser.JavaModel.refreshExternalArchives(new IJavaElement[] { root }, Monitor);
+				current.setProperty(path, GetStamp(root.getPath().toFile()));
+				synchronized(this)
+				{
+					++Refreshed;
+				}
+				Notify();
+			}
+		}
+		catch(Exception e)
+		{
+			Log.Error(e);
+		}
+		finally
+		{
+			// Archives not refreshed yet are left out, so an interrupted refresh picks them up next time
+			SaveSnapshot(snapshotFile, current);
+			synchronized(this)
+			{
+				Complete = true;
+				CurrentArchive = null;
+			}
+			Notify();
+			synchronized(this)
+			{
+				Subscribed = false;
+			}
+			Log.Info("External archives updated");
+		}
+	}
+	private static List<IPackageFragmentRoot> GetExternalArchives(IJavaModel model) throws Exception
+	{
+		List<IPackageFragmentRoot> archives = new ArrayList<IPackageFragmentRoot>();
+		HashSet<String> paths = new HashSet<String>();
+		for(IJavaProject project: model.getJavaProjects())
+		{
+			for(IPackageFragmentRoot root: project.getPackageFragmentRoots())
+			{
+				if (root.isArchive() && root.isExternal() && paths.add(root.getPath().toOSString()))
+					archives.add(root);
+			}
+		}
+		return archives;
+	}
+	private static String GetStamp(File archive)
+	{
+		return archive.lastModified() + ":" + archive.length();
+	}
+	private void Notify()
+	{
+		ArchiveRefreshStatusResponse status;
+		synchronized(this)
+		{
+			// After Shutdown the channel is being closed; a late notification would only fail
+			if (!Subscribed || Monitor.isCanceled())
+				return;
+			status = CreateStatus();
+		}
+
+		try
+		{
+			Pipe.WriteMessage(Protocol.Response.newBuilder()
+					.setResponseType(ResponseType.ArchiveRefreshStatus)
+					.setNotification(true)
+					.setArchiveRefreshStatusResponse(status)
+					.build());
+		}
+		catch(IOException e)
+		{
+			Log.Error(e);
+		}
+	}
+	private ArchiveRefreshStatusResponse CreateStatus()
+	{
+		ArchiveRefreshStatusResponse.Builder status = ArchiveRefreshStatusResponse.newBuilder()
+				.setComplete(Complete)
+				.setArchivesRefreshed(Refreshed)
+				.setArchivesToRefresh(ToRefresh)
+				.setArchivesUnchanged(Unchanged);
+		if (CurrentArchive != null)
+			status.setCurrentArchive(CurrentArchive);
+		return status.build();
+	}
+	private static File GetSnapshotFile()
+	{
+		try
+		{
+			// Kept in the workspace metadata, next to the JDT state the snapshot describes
+			return Activator.getStateFile(SnapshotFileName);
+		}
+		catch(Exception e)
+		{
+			Log.Error(e);
+			return null;
+		}
+	}
+	private static Properties LoadSnapshot(File file)
+	{
+		Properties snapshot = new Properties();
+		if (file == null || !file.exists())
+			return snapshot;
+
+		try
+		{
+			InputStream in = new FileInputStream(file);
+			try
+			{
+				snapshot.load(in);
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		catch(IOException e)
+		{
+			Log.Error(e);
+			snapshot.clear(); // a partial snapshot is as good as none
+		}
+		return snapshot;
+	}
+	private static void SaveSnapshot(File file, Properties snapshot)
+	{
+		if (file == null)
+			return;
+
+		try
+		{
+			OutputStream out = new FileOutputStream(file);
+			try
+			{
+				snapshot.store(out, "External archive timestamps as of the last refresh");
+			}
+			finally
+			{
+				out.close();
+			}
+		}
+		catch(IOException e)
+		{
+			Log.Error(e);
+		}
+	}
+}
@@ -0,0 +1,125 @@
+// Copyright (c) Microsoft.  All Rights Reserved.  Licensed under the MIT License.  See LICENSE file in the project root for license information.
+
+package com.microsoft.javapkgsrv;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+// LRU cache of parsed compilation units. A FileParse for a file whose contents did not change
+// returns the id of the unit already cached. Units stay cached after the client disposes its last
+// id for them, and the least recently used of those are evicted once either the unit count or the
+// total source size goes over budget. Units the client still holds ids for are never evicted, so
+// the budget can be exceeded while they are in use.
+public class AstCache {
+	private class Entry
+	{
+		int Id;
+		String FileName;
+		String Contents;
+		CompilationUnit Unit;
+		int RefCount;
+	}
+
+	private LinkedHashMap<Integer, Entry> EntriesById = new LinkedHashMap<Integer, Entry>(16, 0.75f, true);
+	private HashMap<String, Entry> EntriesByContent = new HashMap<String, Entry>();
+	private int MaxUnits;
+	private long MaxSourceChars;
+	private int NextId = 1;
+	private long SourceChars = 0;
+	private long Hits = 0;
+	private long Misses = 0;
+	private long Evictions = 0;
+
+	public AstCache(int maxUnits, long maxSourceChars)
+	{
+		MaxUnits = maxUnits;
+		MaxSourceChars = maxSourceChars;
+	}
+	public synchronized Integer Find(String fileName, String contents)
+	{
+		Entry entry = EntriesByContent.get(GetContentKey(fileName, contents));
+		if (entry == null || !entry.Contents.equals(contents))
+		{
+			++Misses;
+			return null;
+		}
+		++Hits;
+		++entry.RefCount;
+		EntriesById.get(entry.Id); // refresh LRU position
+		return entry.Id;
+	}
+	public synchronized int Add(String fileName, String contents, CompilationUnit unit)
+	{
+		String contentKey = GetContentKey(fileName, contents);
+		Entry existing = EntriesByContent.get(contentKey);
+		if (existing != null && existing.Contents.equals(contents))
+		{
+			// Another request parsed the same contents meanwhile; keep the unit we already have
+			++existing.RefCount;
+			EntriesById.get(existing.Id);
+			return existing.Id;
+		}
+
+		Entry entry = new Entry();
+		entry.Id = NextId++;
+		entry.FileName = fileName;
+		entry.Contents = contents;
+		entry.Unit = unit;
+		entry.RefCount = 1;
+
+		EntriesById.put(entry.Id, entry);
+		EntriesByContent.put(contentKey, entry);
+		SourceChars += contents.length();
+
+		Trim();
+		return entry.Id;
+	}
+	public synchronized CompilationUnit Get(int id)
+	{
+		Entry entry = EntriesById.get(id);
+		return entry != null ? entry.Unit : null;
+	}
+	public synchronized void Release(int id)
+	{
+		Entry entry = EntriesById.get(id);
+		if (entry != null && entry.RefCount > 0 && --entry.RefCount == 0)
+			Trim();
+	}
+	public synchronized Protocol.Response.StatsResponse.AstCacheStats GetStats()
+	{
+		return Protocol.Response.StatsResponse.AstCacheStats.newBuilder()
+				.setUnits(EntriesById.size())
+				.setSourceChars(SourceChars)
+				.setHits(Hits)
+				.setMisses(Misses)
+				.setEvictions(Evictions)
+				.build();
+	}
+	private void Trim()
+	{
+		Iterator<Entry> eldest = EntriesById.values().iterator();
+		while ((EntriesById.size() > MaxUnits || SourceChars > MaxSourceChars) && eldest.hasNext())
+		{
+			Entry victim = eldest.next();
+			if (victim.RefCount > 0)
+				continue; // the client can still ask for this unit's outline or problems
+			eldest.remove();
+			Forget(victim);
+			++Evictions;
+		}
+	}
+	private void Forget(Entry entry)
+	{
+		String contentKey = GetContentKey(entry.FileName, entry.Contents);
+		if (EntriesByContent.get(contentKey) == entry)
+			EntriesByContent.remove(contentKey);
+		SourceChars -= entry.Contents.length();
+	}
+	private static String GetContentKey(String fileName, String contents)
+	{
+		return fileName + "|" + contents.length() + "|" + contents.hashCode();
+	}
+}
@@ -3,22 +3,31 @@
 package com.microsoft.javapkgsrv;
 
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.List;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.jdt.core.CompletionProposal;
 import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.source.DefaultCharacterPairMatcher;
 
 import com.microsoft.javapkgsrv.Protocol.FileIdentifier;
+import com.microsoft.javapkgsrv.Protocol.Request.AutocompleteRequest;
 import com.microsoft.javapkgsrv.Protocol.Request.RequestType;
+import com.microsoft.javapkgsrv.Protocol.Request.SymbolSearchRequest;
+import com.microsoft.javapkgsrv.Protocol.Request.UpdateDocumentRequest;
 import com.microsoft.javapkgsrv.Protocol.Response.AddTypeRootResponse;
 import com.microsoft.javapkgsrv.Protocol.Response.AutocompleteResponse.Completion;
 import com.microsoft.javapkgsrv.Protocol.Response.AutocompleteResponse;
+import com.microsoft.javapkgsrv.Protocol.Response.BatchParseResponse;
 import com.microsoft.javapkgsrv.Protocol.Response.FileParseMessagesResponse;
 import com.microsoft.javapkgsrv.Protocol.Response.FileParseMessagesResponse.Problem;
 import com.microsoft.javapkgsrv.Protocol.Response.FileParseResponse;
 import com.microsoft.javapkgsrv.Protocol.Response.FindDefinitionResponse;
 import com.microsoft.javapkgsrv.Protocol.Response.OpenTypeRootResponse;
+import com.microsoft.javapkgsrv.Protocol.Response.OutlineHoverResponse;
 import com.microsoft.javapkgsrv.Protocol.Response.OutlineResultResponse;
 import com.microsoft.javapkgsrv.Protocol.Response.OutlineResultResponse.Outline;
 import com.microsoft.javapkgsrv.Protocol.Response.ParamHelpPositionUpdateResponse;
@@ -27,52 +36,286 @@ import com.microsoft.javapkgsrv.Protocol.Response.ParamHelpResponse.Signature;
 import com.microsoft.javapkgsrv.Protocol.Response.QuickInfoResponse;
 import com.microsoft.javapkgsrv.Protocol.Response.QuickInfoResponse.JavaElement;
 import com.microsoft.javapkgsrv.Protocol.Response.ResponseType;
+import com.microsoft.javapkgsrv.Protocol.Response.SymbolSearchResponse;
+import com.microsoft.javapkgsrv.Protocol.Response.UpdateDocumentResponse;
 import com.microsoft.javapkgsrv.Protocol.TypeRootIdentifier;
 
 public class ClientProxy {
 	private PipeChannel Pipe = null;
 	private JavaParser Parser = new JavaParser();
+	private int WorkerCount = 0; // 0 processes requests one at a time on the reading thread
+	private RequestCancellation Cancellation = new RequestCancellation();
+	private Reconciler BackgroundReconciler = null;
+	private ArchiveRefresher Archives = null;
+	private SymbolIndex Symbols = new SymbolIndex(Parser);
+	private RequestMetrics Metrics = new RequestMetrics();
+	private boolean BackgroundServices = true; // archive refresh and symbol indexing
 	public ClientProxy()
 	{
 		Pipe = new PipeChannel();
+		BackgroundReconciler = new Reconciler(Parser, Pipe);
+		Archives = new ArchiveRefresher(Parser, Pipe);
 	}
 	public ClientProxy(String pipeName)
 	{
 		Pipe = new PipeChannel(pipeName);
+		BackgroundReconciler = new Reconciler(Parser, Pipe);
+		Archives = new ArchiveRefresher(Parser, Pipe);
+	}
+	public ClientProxy(PipeChannel pipe, int workerCount)
+	{
+		Pipe = pipe;
+		BackgroundReconciler = new Reconciler(Parser, Pipe);
+		Archives = new ArchiveRefresher(Parser, Pipe);
+		WorkerCount = workerCount;
+	}
+	public ClientProxy(String pipeName, int workerCount)
+	{
+		Pipe = new PipeChannel(pipeName);
+		BackgroundReconciler = new Reconciler(Parser, Pipe);
+		Archives = new ArchiveRefresher(Parser, Pipe);
+		WorkerCount = workerCount;
+	}
+	public RequestMetrics GetMetrics()
+	{
+		return Metrics;
+	}
+	// Keeps archive refresh and symbol indexing from competing with the requests (replay benchmark);
+	// symbol searches then only see the index saved by an earlier run
+	public void DisableBackgroundServices()
+	{
+		BackgroundServices = false;
 	}
 	public void Run() throws IOException, JavaModelException
 	{
 		Pipe.Init();
-		Parser.Init();
+		try
+		{
+			Parser.Init();
+			if (BackgroundServices)
+			{
+				Archives.Start();
+				Symbols.Start();
+			}
+			if (WorkerCount > 0)
+				RunConcurrent();
+			else
+				RunSerial();
+		}
+		finally
+		{
+			BackgroundReconciler.Shutdown();
+			Archives.Shutdown();
+			Symbols.Shutdown();
+			Pipe.Disconnect(); // also closes the capture file
+		}
+	}
+	private void RunSerial()
+	{
 		while (true)
 		{
 			try
 			{
 				Protocol.Request request = Pipe.ReadMessage();
-				Protocol.Response response = ProcessRequest(request);
-				Pipe.WriteMessage(response);
+				long received = System.nanoTime();
+				IProgressMonitor monitor = Cancellation.Begin(request);
+				Protocol.Response response = ProcessRequest(request, monitor, received);
+				Cancellation.End(request, monitor);
+				WriteResponse(request, response, monitor);
 
 				if (request.getRequestType().equals(RequestType.Bye))
 					break; // return to allow the process to exit
 			}
 			catch(IOException e)
 			{
-				e.printStackTrace();
+				Log.Error(e);
 				break;
 			}
 		}
 	}
-	private Protocol.Response ProcessRequest(Protocol.Request request) 
+	private void RunConcurrent()
+	{
+		Log.Info("Dispatching requests on " + WorkerCount + " worker threads");
+		RequestDispatcher dispatcher = new RequestDispatcher(WorkerCount);
+		try
+		{
+			while (true)
+			{
+				final Protocol.Request request = Pipe.ReadMessage();
+				final long received = System.nanoTime();
+				// Registering here rather than on the worker lets a newer request supersede one still queued
+				final IProgressMonitor monitor = Cancellation.Begin(request);
+				if (request.getRequestType().equals(RequestType.Bye))
+				{
+					// Let in-flight requests finish so their responses go out before Bye
+					dispatcher.Drain();
+					WriteResponse(request, ProcessRequest(request, monitor, received), monitor);
+					break; // return to allow the process to exit
+				}
+				else if (request.getRequestType().equals(RequestType.Cancel))
+				{
+					// Handled inline; queuing it behind the work it targets would defeat the purpose
+					Protocol.Response response = ProcessRequest(request, monitor, received);
+					Cancellation.End(request, monitor);
+					WriteResponse(request, response, monitor);
+					continue;
+				}
+
+				dispatcher.Submit(GetDocumentKey(request), new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						try
+						{
+							Protocol.Response response = ProcessRequest(request, monitor, received);
+							Cancellation.End(request, monitor);
+							WriteResponse(request, response, monitor);
+						}
+						catch(IOException e)
+						{
+							Log.Error(e);
+						}
+					}
+				});
+			}
+		}
+		catch(IOException e)
+		{
+			Log.Error(e);
+		}
+		catch(InterruptedException e)
+		{
+			Log.Error(e);
+		}
+		finally
+		{
+			dispatcher.Shutdown();
+		}
+	}
+	private void WriteResponse(Protocol.Request request, Protocol.Response response, IProgressMonitor monitor) throws IOException
+	{
+		ScheduleReconcile(request);
+
+		if (request.hasRequestId() || monitor.isCanceled())
+		{
+			Protocol.Response.Builder builder = response.toBuilder();
+			if (request.hasRequestId())
+				builder.setRequestId(request.getRequestId());
+			if (monitor.isCanceled())
+				builder.setCanceled(true);
+			response = builder.build();
+		}
+		long started = System.nanoTime();
+		Pipe.WriteMessage(response);
+		Metrics.RecordWrite(request.getRequestType(), System.nanoTime() - started, response.getSerializedSize());
+	}
+	private Protocol.Response ProcessRequest(Protocol.Request request, IProgressMonitor monitor, long receivedNanos)
+	{
+		long allocated = Metrics.GetAllocatedBytes();
+		long started = System.nanoTime();
+		Protocol.Response response = ProcessRequest(request, monitor);
+		long finished = System.nanoTime();
+		Metrics.RecordProcessing(request.getRequestType(), started - receivedNanos, finished - started, request.getSerializedSize(), Metrics.GetAllocatedBytes() - allocated);
+		return response;
+	}
+	private Protocol.Response CreateAutocompleteResponse(List<Completion> proposals, boolean complete, int totalCount)
+	{
+		return Protocol.Response.newBuilder()
+				.setResponseType(ResponseType.Autocomplete)
+				.setAutocompleteResponse(AutocompleteResponse.newBuilder()
+						.setStatus(true)
+						.addAllProposals(proposals)
+						.setComplete(complete)
+						.setTotalCount(totalCount)
+						.build())
+				.build();
+	}
+	// A canceled request isn't a failure: answer it without results and let WriteResponse flag it as canceled
+	private Protocol.Response CreateCanceledResponse(Protocol.Request request, ResponseType responseType)
+	{
+		Log.Debug(request.getRequestType() + " request canceled");
+		return Protocol.Response.newBuilder()
+				.setResponseType(responseType)
+				.setCanceled(true)
+				.build();
+	}
+	// Any request that changed a type root's buffer restarts that document's reconcile delay
+	private void ScheduleReconcile(Protocol.Request request)
+	{
+		if (!BackgroundReconciler.IsEnabled())
+			return;
+
+		switch(request.getRequestType())
+		{
+		case UpdateDocument:
+			BackgroundReconciler.Schedule(request.getUpdateDocumentRequest().getTypeRootIdentifier().getHandle());
+			break;
+		case Autocomplete:
+			if (request.getAutocompleteRequest().hasFileParseContents())
+				BackgroundReconciler.Schedule(request.getAutocompleteRequest().getTypeRootIdentifier().getHandle());
+			break;
+		case ParamHelp:
+			if (request.getParamHelpRequest().hasFileParseContents())
+				BackgroundReconciler.Schedule(request.getParamHelpRequest().getTypeRootIdentifier().getHandle());
+			break;
+		case QuickInfo:
+			if (request.getQuickInfoRequest().hasFileParseContents())
+				BackgroundReconciler.Schedule(request.getQuickInfoRequest().getTypeRootIdentifier().getHandle());
+			break;
+		case FindDefinition:
+			if (request.getFindDefinitionRequest().hasFileParseContents())
+				BackgroundReconciler.Schedule(request.getFindDefinitionRequest().getTypeRootIdentifier().getHandle());
+			break;
+		default:
+			break;
+		}
+	}
+	// Requests against the same document must observe each other's buffer updates, so they share a key
+	private String GetDocumentKey(Protocol.Request request)
+	{
+		switch(request.getRequestType())
+		{
+		case FileParse:
+			return request.getFileParseRequest().getFileName();
+		case OpenTypeRoot:
+			return request.getOpenTypeRootRequest().getFileName();
+		case DisposeFile:
+			return "file:" + request.getDisposeFileRequest().getFileIdentifier().getId();
+		case OutlineFile:
+			return "file:" + request.getOutlineFileRequest().getFileIdentifier().getId();
+		case OutlineHover:
+			return "file:" + request.getOutlineHoverRequest().getFileIdentifier().getId();
+		case FileParseMessages:
+			return "file:" + request.getFileParseMessagesRequest().getFileIdentifier().getId();
+		case Autocomplete:
+			return request.getAutocompleteRequest().getTypeRootIdentifier().getHandle();
+		case ParamHelp:
+			return request.getParamHelpRequest().getTypeRootIdentifier().getHandle();
+		case QuickInfo:
+			return request.getQuickInfoRequest().getTypeRootIdentifier().getHandle();
+		case FindDefinition:
+			return request.getFindDefinitionRequest().getTypeRootIdentifier().getHandle();
+		case DisposeTypeRoot:
+			return request.getDisposeTypeRootRequest().getTypeRootIdentifier().getHandle();
+		case AddTypeRoot:
+			return request.getAddTypeRootRequest().getTypeRootIdentifier().getHandle();
+		case UpdateDocument:
+			return request.getUpdateDocumentRequest().getTypeRootIdentifier().getHandle();
+		default:
+			return null; // stateless (e.g. ParamHelpPositionUpdate)
+		}
+	}
+	private Protocol.Response ProcessRequest(final Protocol.Request request, final IProgressMonitor monitor) 
 	{
 		if (request.getRequestType().equals(RequestType.FileParse))
 		{
 			try
 			{
-				System.out.print("Parsing " + request.getFileParseRequest().getFileName());
 				Integer result = Parser.ProcessParseRequest(
 						request.getFileParseRequest().getFileParseContents(), 
 						request.getFileParseRequest().getFileName());
-				System.out.println(" id = " + result.toString());
+				Log.Debug("Parsing " + request.getFileParseRequest().getFileName() + " id = " + result.toString());
 				
 				return Protocol.Response.newBuilder()
 						.setResponseType(ResponseType.FileParseStatus)
@@ -86,7 +329,7 @@ public class ClientProxy {
 			}
 			catch(Exception e)
 			{
-				e.printStackTrace();
+				Log.Error(e);
 				return Protocol.Response.newBuilder()
 						.setResponseType(ResponseType.FileParseStatus)
 						.setFileParseResponse(FileParseResponse.newBuilder()
@@ -99,7 +342,7 @@ public class ClientProxy {
 		else if (request.getRequestType().equals(RequestType.DisposeFile))
 		{
 			Integer fileId = request.getDisposeFileRequest().getFileIdentifier().getId();			
-			System.out.println("Remove AST for id = " + fileId);
+			Log.Debug("Remove AST for id = " + fileId);
 			Parser.ProcessDisposeFileRequest(fileId);
 			
 			return Protocol.Response.newBuilder()
@@ -109,8 +352,8 @@ public class ClientProxy {
 		else if (request.getRequestType().equals(RequestType.OutlineFile))
 		{
 			Integer fileId = request.getOutlineFileRequest().getFileIdentifier().getId();
-			System.out.println("Creating outline for id = " + fileId);
-			List<Outline> outline = Parser.ProcessOutlineRequest(fileId);
+			Log.Debug("Creating outline for id = " + fileId);
+			List<Outline> outline = Parser.ProcessOutlineRequest(fileId, request.getOutlineFileRequest().getLazy());
 			
 			return Protocol.Response.newBuilder()
 					.setResponseType(ResponseType.OutlineResults)
@@ -119,10 +362,37 @@ public class ClientProxy {
 							.build())
 					.build();
 		}
+		else if (request.getRequestType().equals(RequestType.OutlineHover))
+		{
+			try
+			{
+				Integer fileId = request.getOutlineHoverRequest().getFileIdentifier().getId();
+				String hoverText = Parser.ProcessOutlineHoverRequest(fileId, request.getOutlineHoverRequest().getStartPosition());
+
+				return Protocol.Response.newBuilder()
+						.setResponseType(ResponseType.OutlineHover)
+						.setOutlineHoverResponse(OutlineHoverResponse.newBuilder()
+								.setStatus(true)
+								.setHoverText(hoverText)
+								.build())
+						.build();
+			}
+			catch(Exception e)
+			{
+				Log.Error(e);
+				return Protocol.Response.newBuilder()
+						.setResponseType(ResponseType.OutlineHover)
+						.setOutlineHoverResponse(OutlineHoverResponse.newBuilder()
+								.setStatus(false)
+								.setErrorMessage(e.getMessage() != null ? e.getMessage() : e.toString())
+								.build())
+						.build();
+			}
+		}
 		else if (request.getRequestType().equals(RequestType.FileParseMessages))
 		{
 			Integer fileId = request.getFileParseMessagesRequest().getFileIdentifier().getId();
-			System.out.println("Sending squiggles for id = " + fileId);
+			Log.Debug("Sending squiggles for id = " + fileId);
 			List<Problem> problems = Parser.ProcessFileParseMessagesRequest(fileId);
 			
 			return Protocol.Response.newBuilder()
@@ -136,23 +406,42 @@ public class ClientProxy {
 		{
 			try
 			{
-				System.out.println("Autocomplete request for " + request.getAutocompleteRequest().getTypeRootIdentifier().getHandle());
-				List<Completion> proposals = Parser.ProcessAutocompleteRequest(
-						request.getAutocompleteRequest().getFileParseContents(),
-						request.getAutocompleteRequest().getTypeRootIdentifier().getHandle(),
-						request.getAutocompleteRequest().getCursorPosition());
+				AutocompleteRequest autocomplete = request.getAutocompleteRequest();
+				Log.Debug("Autocomplete request for " + autocomplete.getTypeRootIdentifier().getHandle());
+				List<CompletionProposal> proposals = Parser.ProcessAutocompleteRequest(
+						autocomplete.hasFileParseContents() ? autocomplete.getFileParseContents() : null,
+						autocomplete.getTypeRootIdentifier().getHandle(),
+						autocomplete.getCursorPosition(),
+						autocomplete.hasPrefix() ? autocomplete.getPrefix() : null,
+						monitor);
 				
-				return Protocol.Response.newBuilder()
-						.setResponseType(ResponseType.Autocomplete)
-						.setAutocompleteResponse(AutocompleteResponse.newBuilder()
-								.setStatus(true)
-								.addAllProposals(proposals)
-								.build())
-						.build();
+				int total = proposals.size();
+				int sent = autocomplete.hasMaxResults() ? Math.min(Math.max(autocomplete.getMaxResults(), 0), total) : total;
+				List<Completion> page = Parser.TranslateCompletions(proposals, 0, sent);
+				if (autocomplete.getStreamRemainder())
+				{
+					// First page goes out right away; the rest follows in chunks, the last of which is returned
+					int chunkSize = Math.max(autocomplete.getChunkSize(), 1);
+					while (sent < total)
+					{
+						WriteResponse(request, CreateAutocompleteResponse(page, false, total), monitor);
+						if (monitor.isCanceled())
+							throw new OperationCanceledException();
+
+						int next = Math.min(sent + chunkSize, total);
+						page = Parser.TranslateCompletions(proposals, sent, next);
+						sent = next;
+					}
+				}
+				return CreateAutocompleteResponse(page, true, total);
+			}
+			catch(OperationCanceledException e)
+			{
+				return CreateCanceledResponse(request, ResponseType.Autocomplete);
 			}
 			catch(Exception e)
 			{
-				e.printStackTrace();
+				Log.Error(e);
 				return Protocol.Response.newBuilder()
 						.setResponseType(ResponseType.Autocomplete)
 						.setAutocompleteResponse(AutocompleteResponse.newBuilder()
@@ -166,14 +455,16 @@ public class ClientProxy {
 		{
 			try
 			{
-				System.out.println("ParamHelp request for " + request.getParamHelpRequest().getTypeRootIdentifier().getHandle());
+				Log.Debug("ParamHelp request for " + request.getParamHelpRequest().getTypeRootIdentifier().getHandle());
+				String contents = request.getParamHelpRequest().hasFileParseContents() ? request.getParamHelpRequest().getFileParseContents() : null;
 				JavaParamHelpMatcher.ParamRegion region = Parser.getScope(
-						request.getParamHelpRequest().getFileParseContents(), 
+						Parser.GetContents(request.getParamHelpRequest().getTypeRootIdentifier().getHandle(), contents), 
 						request.getParamHelpRequest().getCursorPosition());
 				List<Signature> signatures = Parser.ProcessParamHelpRequest(
-						request.getParamHelpRequest().getFileParseContents(),
+						contents,
 						request.getParamHelpRequest().getTypeRootIdentifier().getHandle(),
-						region.region.getOffset() + 1); // Request Autocomplete right after the open brace
+						region.region.getOffset() + 1, // Request Autocomplete right after the open brace
+						monitor);
 				
 				return Protocol.Response.newBuilder()
 						.setResponseType(ResponseType.ParamHelp)
@@ -186,9 +477,13 @@ public class ClientProxy {
 								.build())
 						.build();
 			}
+			catch(OperationCanceledException e)
+			{
+				return CreateCanceledResponse(request, ResponseType.ParamHelp);
+			}
 			catch(Exception e)
 			{
-				e.printStackTrace();
+				Log.Error(e);
 				return Protocol.Response.newBuilder()
 						.setResponseType(ResponseType.ParamHelp)
 						.setParamHelpResponse(ParamHelpResponse.newBuilder()
@@ -202,7 +497,9 @@ public class ClientProxy {
 		{
 			try
 			{
-				System.out.println("ParamHelp PositionUpdate request for " + request.getParamHelpPositionUpdateRequest().getFileParseContents());
+				if (Log.IsEnabled(Log.Level.Debug)) // the request carries no file name; log the position rather than the whole file
+					Log.Debug("ParamHelp PositionUpdate request at " + request.getParamHelpPositionUpdateRequest().getCursorPosition() +
+							" (" + request.getParamHelpPositionUpdateRequest().getFileParseContents().length() + " chars)");
 				JavaParamHelpMatcher.ParamRegion region = Parser.updateScope(
 						request.getParamHelpPositionUpdateRequest().getFileParseContents(),
 						request.getParamHelpPositionUpdateRequest().getCursorPosition());
@@ -218,7 +515,7 @@ public class ClientProxy {
 			}
 			catch(Exception e)
 			{
-				e.printStackTrace();
+				Log.Error(e);
 				return Protocol.Response.newBuilder()
 						.setResponseType(ResponseType.ParamHelpPositionUpdate)
 						.setParamHelpPositionUpdateResponse(ParamHelpPositionUpdateResponse.newBuilder()
@@ -232,11 +529,12 @@ public class ClientProxy {
 		{
 			try
 			{
-				System.out.println("QuickInfo request for " + request.getQuickInfoRequest().getTypeRootIdentifier().getHandle());
+				Log.Debug("QuickInfo request for " + request.getQuickInfoRequest().getTypeRootIdentifier().getHandle());
 				List<JavaElement> elements = Parser.ProcessQuickInfoRequest(
-						request.getQuickInfoRequest().getFileParseContents(),
+						request.getQuickInfoRequest().hasFileParseContents() ? request.getQuickInfoRequest().getFileParseContents() : null,
 						request.getQuickInfoRequest().getTypeRootIdentifier().getHandle(),
-						request.getQuickInfoRequest().getCursorPosition());
+						request.getQuickInfoRequest().getCursorPosition(),
+						monitor);
 				
 				return Protocol.Response.newBuilder()
 						.setResponseType(ResponseType.QuickInfo)
@@ -245,9 +543,13 @@ public class ClientProxy {
 								.build())
 						.build();
 			}
+			catch(OperationCanceledException e)
+			{
+				return CreateCanceledResponse(request, ResponseType.QuickInfo);
+			}
 			catch(Exception e)
 			{
-				e.printStackTrace();
+				Log.Error(e);
 				return Protocol.Response.newBuilder()
 						.setResponseType(ResponseType.QuickInfo)
 						.setQuickInfoResponse(QuickInfoResponse.newBuilder()
@@ -259,11 +561,13 @@ public class ClientProxy {
 		{
 			try
 			{
-				System.out.println("FindDefinition request for " + request.getFindDefinitionRequest().getTypeRootIdentifier().getHandle());
+				Log.Debug("FindDefinition request for " + request.getFindDefinitionRequest().getTypeRootIdentifier().getHandle());
 				List<FindDefinitionResponse.JavaElement> elements = Parser.ProcessFindDefinintionRequest(
-						request.getFindDefinitionRequest().getFileParseContents(),
+						request.getFindDefinitionRequest().hasFileParseContents() ? request.getFindDefinitionRequest().getFileParseContents() : null,
 						request.getFindDefinitionRequest().getTypeRootIdentifier().getHandle(),
-						request.getFindDefinitionRequest().getCursorPosition());
+						request.getFindDefinitionRequest().getCursorPosition(),
+						new HashSet<String>(request.getFindDefinitionRequest().getKnownContentHashesList()),
+						monitor);
 				
 				return Protocol.Response.newBuilder()
 						.setResponseType(ResponseType.FindDefinition)
@@ -274,9 +578,13 @@ public class ClientProxy {
 								.build())
 						.build();
 			}
+			catch(OperationCanceledException e)
+			{
+				return CreateCanceledResponse(request, ResponseType.FindDefinition);
+			}
 			catch(Exception e)
 			{
-				e.printStackTrace();
+				Log.Error(e);
 				return Protocol.Response.newBuilder()
 						.setResponseType(ResponseType.FindDefinition)
 						.setFindDefinitionResponse(FindDefinitionResponse.newBuilder()
@@ -291,7 +599,7 @@ public class ClientProxy {
 		{
 			try
 			{
-				System.out.println("OpenTypeRoot request for " + request.getOpenTypeRootRequest().getFileName());
+				Log.Debug("OpenTypeRoot request for " + request.getOpenTypeRootRequest().getFileName());
 				String typeRootHandle = Parser.ProcessOpenTypeRequest(request.getOpenTypeRootRequest().getFileName());
 				
 				return Protocol.Response.newBuilder()
@@ -306,7 +614,7 @@ public class ClientProxy {
 			}
 			catch(Exception e)
 			{
-				e.printStackTrace();
+				Log.Error(e);
 				return Protocol.Response.newBuilder()
 						.setResponseType(ResponseType.OpenTypeRoot)
 						.setOpenTypeRootResponse(OpenTypeRootResponse.newBuilder()
@@ -319,7 +627,8 @@ public class ClientProxy {
 		else if (request.getRequestType().equals(RequestType.DisposeTypeRoot))
 		{
 			String handle = request.getDisposeTypeRootRequest().getTypeRootIdentifier().getHandle();			
-			System.out.println("Remove typeroot for handle = " + handle);
+			Log.Debug("Remove typeroot for handle = " + handle);
+			BackgroundReconciler.Cancel(handle);
 			Parser.ProcessDisposeTypeRoot(handle);
 			
 			return Protocol.Response.newBuilder()
@@ -330,7 +639,7 @@ public class ClientProxy {
 		{
 			try
 			{
-				System.out.println("AddTypeRoot request for " + request.getAddTypeRootRequest().getTypeRootIdentifier().getHandle());
+				Log.Debug("AddTypeRoot request for " + request.getAddTypeRootRequest().getTypeRootIdentifier().getHandle());
 				String typeRootHandle = Parser.ProcessAddTypeRequest(request.getAddTypeRootRequest().getTypeRootIdentifier().getHandle());
 				
 				return Protocol.Response.newBuilder()
@@ -345,7 +654,7 @@ public class ClientProxy {
 			}
 			catch(Exception e)
 			{
-				e.printStackTrace();
+				Log.Error(e);
 				return Protocol.Response.newBuilder()
 						.setResponseType(ResponseType.AddTypeRoot)
 						.setAddTypeRootResponse(AddTypeRootResponse.newBuilder()
@@ -355,6 +664,167 @@ public class ClientProxy {
 						.build();
 			}
 		}
+		else if (request.getRequestType().equals(RequestType.UpdateDocument))
+		{
+			UpdateDocumentRequest update = request.getUpdateDocumentRequest();
+			try
+			{
+				Log.Debug("UpdateDocument request for " + update.getTypeRootIdentifier().getHandle() + " version = " + update.getVersion());
+				int version = Parser.ProcessUpdateDocumentRequest(
+						update.getTypeRootIdentifier().getHandle(),
+						update.getVersion(),
+						update.hasBaseVersion() ? update.getBaseVersion() : null,
+						update.hasFileParseContents() ? update.getFileParseContents() : null,
+						update.getEditsList());
+
+				return Protocol.Response.newBuilder()
+						.setResponseType(ResponseType.UpdateDocument)
+						.setUpdateDocumentResponse(UpdateDocumentResponse.newBuilder()
+								.setStatus(true)
+								.setVersion(version)
+								.build())
+						.build();
+			}
+			catch(Exception e)
+			{
+				Log.Error(e);
+				return Protocol.Response.newBuilder()
+						.setResponseType(ResponseType.UpdateDocument)
+						.setUpdateDocumentResponse(UpdateDocumentResponse.newBuilder()
+								.setStatus(false)
+								.setErrorMessage(e.getMessage() != null ? e.getMessage() : e.toString())
+								.build())
+						.build();
+			}
+		}
+		else if (request.getRequestType().equals(RequestType.BatchParse))
+		{
+			try
+			{
+				Log.Debug("BatchParse request for " + request.getBatchParseRequest().getFilesCount() + " files");
+				Parser.ProcessBatchParseRequest(
+						request.getBatchParseRequest().getFilesList(),
+						request.getBatchParseRequest().getIncludeProblems(),
+						new JavaParser.BatchParseListener()
+						{
+							@Override
+							public void Accept(BatchParseResponse.FileResult result)
+							{
+								try
+								{
+									WriteResponse(request, Protocol.Response.newBuilder()
+											.setResponseType(ResponseType.BatchParse)
+											.setBatchParseResponse(BatchParseResponse.newBuilder()
+													.setComplete(false)
+													.addResults(result)
+													.build())
+											.build(), monitor);
+								}
+								catch(IOException e)
+								{
+									Log.Error(e);
+								}
+							}
+						},
+						monitor);
+
+				return Protocol.Response.newBuilder()
+						.setResponseType(ResponseType.BatchParse)
+						.setBatchParseResponse(BatchParseResponse.newBuilder()
+								.setComplete(true)
+								.build())
+						.build();
+			}
+			catch(OperationCanceledException e)
+			{
+				// Still marked complete so the client stops waiting for partial results
+				Log.Debug("BatchParse request canceled");
+				return Protocol.Response.newBuilder()
+						.setResponseType(ResponseType.BatchParse)
+						.setCanceled(true)
+						.setBatchParseResponse(BatchParseResponse.newBuilder()
+								.setComplete(true)
+								.build())
+						.build();
+			}
+			catch(Exception e)
+			{
+				Log.Error(e);
+				return Protocol.Response.newBuilder()
+						.setResponseType(ResponseType.BatchParse)
+						.setBatchParseResponse(BatchParseResponse.newBuilder()
+								.setComplete(true)
+								.setErrorMessage(e.getMessage() != null ? e.getMessage() : e.toString())
+								.build())
+						.build();
+			}
+		}
+		else if (request.getRequestType().equals(RequestType.ConfigureReconciler))
+		{
+			Log.Debug("ConfigureReconciler request: enabled = " + request.getConfigureReconcilerRequest().getEnabled());
+			BackgroundReconciler.Configure(
+					request.getConfigureReconcilerRequest().getEnabled(),
+					request.getConfigureReconcilerRequest().getDelayMilliseconds());
+
+			return Protocol.Response.newBuilder()
+					.setResponseType(ResponseType.ConfigureReconciler)
+					.build();
+		}
+		else if (request.getRequestType().equals(RequestType.Stats))
+		{
+			return Protocol.Response.newBuilder()
+					.setResponseType(ResponseType.Stats)
+					.setStatsResponse(Parser.ProcessStatsRequest().toBuilder()
+							.addAllRequests(Metrics.GetStats())
+							.build())
+					.build();
+		}
+		else if (request.getRequestType().equals(RequestType.SymbolSearch))
+		{
+			try
+			{
+				SymbolSearchRequest search = request.getSymbolSearchRequest();
+				Log.Debug("SymbolSearch request for " + search.getQuery());
+				List<SymbolSearchResponse.Symbol> symbols = Symbols.Search(search.getQuery(), search.getMaxResults(), search.getTypesOnly());
+
+				return Protocol.Response.newBuilder()
+						.setResponseType(ResponseType.SymbolSearch)
+						.setSymbolSearchResponse(SymbolSearchResponse.newBuilder()
+								.setStatus(true)
+								.addAllSymbols(symbols)
+								.setComplete(Symbols.IsComplete())
+								.build())
+						.build();
+			}
+			catch(Exception e)
+			{
+				Log.Error(e);
+				return Protocol.Response.newBuilder()
+						.setResponseType(ResponseType.SymbolSearch)
+						.setSymbolSearchResponse(SymbolSearchResponse.newBuilder()
+								.setStatus(false)
+								.setErrorMessage(e.getMessage() != null ? e.getMessage() : e.toString())
+								.build())
+						.build();
+			}
+		}
+		else if (request.getRequestType().equals(RequestType.ArchiveRefreshStatus))
+		{
+			return Protocol.Response.newBuilder()
+					.setResponseType(ResponseType.ArchiveRefreshStatus)
+					.setArchiveRefreshStatusResponse(Archives.GetStatus(request.getArchiveRefreshStatusRequest().getSubscribe()))
+					.build();
+		}
+		else if (request.getRequestType().equals(RequestType.Cancel))
+		{
+			int requestId = request.getCancelRequest().getRequestId();
+			Log.Debug("Cancel request for id = " + requestId);
+			Cancellation.Cancel(requestId);
+
+			return Protocol.Response.newBuilder()
+					.setResponseType(ResponseType.Cancel)
+					.build();
+		}
 		else // Bye message
 		{
 			return Protocol.Response.newBuilder()
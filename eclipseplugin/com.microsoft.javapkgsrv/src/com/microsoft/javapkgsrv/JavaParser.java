@@ -3,20 +3,34 @@
 package com.microsoft.javapkgsrv;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.jdt.core.CompletionProposal;
 import org.eclipse.jdt.core.CompletionRequestor;
+import org.eclipse.jdt.core.ElementChangedEvent;
 import org.eclipse.jdt.core.IBuffer;
 import org.eclipse.jdt.core.IClassFile;
+import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IJavaModel;
+import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.IOpenable;
 import org.eclipse.jdt.core.ISourceRange;
 import org.eclipse.jdt.core.ISourceReference;
@@ -25,23 +39,32 @@ import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.core.Signature;
 import org.eclipse.jdt.core.SourceRange;
+import org.eclipse.jdt.core.compiler.CharOperation;
 import org.eclipse.jdt.core.compiler.IProblem;
 import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTRequestor;
 import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
 import org.eclipse.jdt.core.dom.TypeDeclaration;
 import org.eclipse.jface.text.Document;
 
+import com.microsoft.javapkgsrv.Protocol.FileIdentifier;
+import com.microsoft.javapkgsrv.Protocol.Request.FileParseRequest;
+import com.microsoft.javapkgsrv.Protocol.TextEdit;
 import com.microsoft.javapkgsrv.Protocol.TypeRootIdentifier;
 import com.microsoft.javapkgsrv.Protocol.Response.FileParseMessagesResponse.Problem;
 import com.microsoft.javapkgsrv.Protocol.Response.QuickInfoResponse.JavaElement;
 import com.microsoft.javapkgsrv.Protocol.Response.*;
 
 public class JavaParser {
-	private HashMap<Integer, CompilationUnit> ActiveUnits = new HashMap<Integer, CompilationUnit>();
-	private HashMap<String, ITypeRoot> ActiveTypeRoots = new HashMap<String, ITypeRoot>();
+	private AstCache ActiveUnits = new AstCache(32, 4 * 1024 * 1024);
+	private QuickInfoCache QuickInfos = new QuickInfoCache(1024);
+	private TypeRootRegistry ActiveTypeRoots = new TypeRootRegistry(64, 16 * 1024 * 1024);
+	private Map<String, Integer> DocumentVersions = new ConcurrentHashMap<String, Integer>();
 	public IWorkspaceRoot WorkspaceRoot = null;
 	public IJavaModel JavaModel = null;
 	
@@ -50,22 +73,137 @@ public class JavaParser {
 		WorkspaceRoot = ResourcesPlugin.getWorkspace().getRoot();
 
 		JavaModel = JavaCore.create(WorkspaceRoot);
-		System.out.println("Updating external archives...");
-		JavaModel.refreshExternalArchives(null, null);
+		JavaCore.addElementChangedListener(QuickInfos, ElementChangedEvent.POST_CHANGE);
+		// External archives are refreshed in the background by ArchiveRefresher
 	}
 	public Integer ProcessParseRequest(String contentFile, String fileName) throws Exception
 	{
+		Integer cached = ActiveUnits.Find(fileName, contentFile);
+		if (cached != null)
+			return cached;
+
 		CompilationUnit cu = Parse(contentFile, fileName);
-		int hashCode = cu.hashCode();
-		ActiveUnits.put(hashCode, cu);
-		return hashCode;
+		return ActiveUnits.Add(fileName, contentFile, cu);
 	}
 	public void ProcessDisposeFileRequest(int fileIdentifier)
 	{
-		if (ActiveUnits.containsKey(fileIdentifier))
-			ActiveUnits.remove(fileIdentifier);
+		ActiveUnits.Release(fileIdentifier);
 	}
-	private CompilationUnit Parse(String contentFile, String fileName) throws Exception
+	public boolean HasUnit(int fileIdentifier)
+	{
+		return ActiveUnits.Get(fileIdentifier) != null;
+	}
+	public Protocol.Response.StatsResponse ProcessStatsRequest()
+	{
+		return Protocol.Response.StatsResponse.newBuilder()
+				.setAstCache(ActiveUnits.GetStats())
+				.setQuickInfoCache(QuickInfos.GetStats())
+				.setTypeRoots(ActiveTypeRoots.GetStats())
+				.build();
+	}
+	public interface BatchParseListener
+	{
+		void Accept(BatchParseResponse.FileResult result);
+	}
+	public void ProcessBatchParseRequest(List<FileParseRequest> files, boolean includeProblems, BatchParseListener listener, IProgressMonitor monitor) throws Exception
+	{
+		// Group the files by project so each project's classpath is resolved once for the whole batch
+		Map<IJavaProject, List<ICompilationUnit>> workingCopies = new LinkedHashMap<IJavaProject, List<ICompilationUnit>>();
+		Map<ICompilationUnit, FileParseRequest> sources = new HashMap<ICompilationUnit, FileParseRequest>();
+		try
+		{
+			for(FileParseRequest file: files)
+			{
+				CheckCanceled(monitor);
+				try
+				{
+					Integer cached = ActiveUnits.Find(file.getFileName(), file.getFileParseContents());
+					if (cached != null)
+					{
+						listener.Accept(CreateFileResult(file.getFileName(), cached, includeProblems));
+						continue;
+					}
+
+					IFile resource = FindFile(file.getFileName());
+					IJavaElement element = JavaCore.create(resource);
+					if (!(element instanceof ICompilationUnit))
+						throw new Exception("File is not a Java compilation unit: " + file.getFileName());
+
+					ICompilationUnit workingCopy = ((ICompilationUnit)element).getWorkingCopy(monitor);
+					workingCopy.getBuffer().setContents(file.getFileParseContents().toCharArray());
+					sources.put(workingCopy, file);
+
+					IJavaProject project = workingCopy.getJavaProject();
+					if (!workingCopies.containsKey(project))
+						workingCopies.put(project, new ArrayList<ICompilationUnit>());
+					workingCopies.get(project).add(workingCopy);
+				}
+				catch(OperationCanceledException e)
+				{
+					throw e;
+				}
+				catch(Exception e)
+				{
+					listener.Accept(BatchParseResponse.FileResult.newBuilder()
+							.setFileName(file.getFileName())
+							.setStatus(false)
+							.setErrorMessage(e.getMessage() != null ? e.getMessage() : e.toString())
+							.build());
+				}
+			}
+
+			for(Map.Entry<IJavaProject, List<ICompilationUnit>> project: workingCopies.entrySet())
+			{
+				CheckCanceled(monitor);
+				ASTParser parser = ASTParser.newParser(AST.JLS8);
+				parser.setProject(project.getKey());
+				parser.setResolveBindings(true);
+				parser.createASTs(
+						project.getValue().toArray(new ICompilationUnit[project.getValue().size()]), 
+						new String[0], 
+						new BatchParseRequestor(sources, includeProblems, listener), 
+						monitor);
+			}
+		}
+		finally
+		{
+			for(ICompilationUnit workingCopy: sources.keySet())
+				workingCopy.discardWorkingCopy();
+		}
+	}
+	private class BatchParseRequestor extends ASTRequestor
+	{
+		private Map<ICompilationUnit, FileParseRequest> Sources;
+		private boolean IncludeProblems;
+		private BatchParseListener Listener;
+
+		public BatchParseRequestor(Map<ICompilationUnit, FileParseRequest> sources, boolean includeProblems, BatchParseListener listener)
+		{
+			Sources = sources;
+			IncludeProblems = includeProblems;
+			Listener = listener;
+		}
+		@Override
+		public void acceptAST(ICompilationUnit source, CompilationUnit ast)
+		{
+			FileParseRequest file = Sources.get(source);
+			int id = ActiveUnits.Add(file.getFileName(), file.getFileParseContents(), ast);
+			Listener.Accept(CreateFileResult(file.getFileName(), id, IncludeProblems));
+		}
+	}
+	private BatchParseResponse.FileResult CreateFileResult(String fileName, int id, boolean includeProblems)
+	{
+		BatchParseResponse.FileResult.Builder result = BatchParseResponse.FileResult.newBuilder()
+				.setFileName(fileName)
+				.setStatus(true)
+				.setFileIdentifier(FileIdentifier.newBuilder()
+						.setId(id)
+						.build());
+		if (includeProblems)
+			result.addAllProblems(ProcessFileParseMessagesRequest(id));
+		return result.build();
+	}
+	private IFile FindFile(String fileName) throws Exception
 	{
 		File file = new File(fileName);
 		IFile[] files = WorkspaceRoot.findFilesForLocationURI(file.toURI(), IResource.FILE);
@@ -74,81 +212,176 @@ public class JavaParser {
 			throw new Exception("Ambigous parse request for file: " + fileName);
 		else if (files.length == 0)
 			throw new Exception("File is not part of the enlistment: " + fileName);
+		return files[0];
+	}
+	private CompilationUnit Parse(String contentFile, String fileName) throws Exception
+	{
+		IFile file = FindFile(fileName);
 		
 		ASTParser parser = ASTParser.newParser(AST.JLS8);
 		parser.setKind(ASTParser.K_COMPILATION_UNIT);
 		parser.setSource(contentFile.toCharArray());
-		parser.setUnitName(files[0].getName());
-		parser.setProject(JavaCore.create(files[0].getProject()));
+		parser.setUnitName(file.getName());
+		parser.setProject(JavaCore.create(file.getProject()));
 		parser.setResolveBindings(true);
 		
 		CompilationUnit cu = (CompilationUnit)parser.createAST(null);
 		return cu;
 	}
-	public List<Protocol.Response.OutlineResultResponse.Outline> ProcessOutlineRequest(Integer fileId) 
+	public List<Protocol.Response.OutlineResultResponse.Outline> ProcessOutlineRequest(Integer fileId, boolean lazy) 
+	{
+		CompilationUnit cu = ActiveUnits.Get(fileId);
+		if (cu != null)
+			return CreateOutline(cu, lazy);
+		return new ArrayList<OutlineResultResponse.Outline>();
+	}
+	// Lazy outlines skip toString() on every declaration, which re-prints the whole subtree
+	// (nested types are printed once per enclosing type); the client asks for hover text per item instead
+	public static List<OutlineResultResponse.Outline> CreateOutline(CompilationUnit cu, final boolean lazy)
 	{
 		final List<OutlineResultResponse.Outline> ret = new ArrayList<OutlineResultResponse.Outline>(); 
-		if (ActiveUnits.containsKey(fileId))
+		cu.accept(new ASTVisitor()
 		{
-			CompilationUnit cu = ActiveUnits.get(fileId);
-			cu.accept(new ASTVisitor()
+			@Override
+			public boolean visit(TypeDeclaration type)
 			{
-				@Override
-				public boolean visit(TypeDeclaration type)
-				{
-					ret.add(OutlineResultResponse.Outline.newBuilder()
-								.setStartPosition(type.getStartPosition())
-								.setLength(type.getLength())
-								.setHoverText(type.toString())
-								.setSummaryText(type.getName().toString())
-								.build());
-					return true;
-				}
-				@Override
-				public boolean visit(MethodDeclaration method)
-				{
-					ret.add(OutlineResultResponse.Outline.newBuilder()
-							.setStartPosition(method.getStartPosition())
-							.setLength(method.getLength())
-							.setHoverText(method.toString())
-							.setSummaryText(method.getName().toString())
-							.build());
-					return true;
-				}
-			});
-		}
+				OutlineResultResponse.Outline.Builder item = OutlineResultResponse.Outline.newBuilder()
+						.setStartPosition(type.getStartPosition())
+						.setLength(type.getLength())
+						.setSummaryText(type.getName().toString())
+						.setSignature((type.isInterface() ? "interface " : "class ") + type.getName().getIdentifier());
+				if (!lazy)
+					item.setHoverText(type.toString());
+				ret.add(item.build());
+				return true;
+			}
+			@Override
+			public boolean visit(MethodDeclaration method)
+			{
+				OutlineResultResponse.Outline.Builder item = OutlineResultResponse.Outline.newBuilder()
+						.setStartPosition(method.getStartPosition())
+						.setLength(method.getLength())
+						.setSummaryText(method.getName().toString())
+						.setSignature(GetSignature(method));
+				if (!lazy)
+					item.setHoverText(method.toString());
+				ret.add(item.build());
+				return true;
+			}
+		});
 		return ret;
 	}
-	public List<AutocompleteResponse.Completion> ProcessAutocompleteRequest(String contentFile, String typeRootId, int cursorPosition) throws Exception 
+	private static String GetSignature(MethodDeclaration method)
 	{
-		if (ActiveTypeRoots.containsKey(typeRootId))
+		StringBuilder sig = new StringBuilder(method.getName().getIdentifier()).append('(');
+		for(Object param: method.parameters())
 		{
-			ITypeRoot typeRoot = ActiveTypeRoots.get(typeRootId);
-			typeRoot.getBuffer().setContents(contentFile.toCharArray());
-			return Autocomplete(typeRoot, cursorPosition);
+			SingleVariableDeclaration decl = (SingleVariableDeclaration)param;
+			if (sig.charAt(sig.length() - 1) != '(')
+				sig.append(", ");
+			sig.append(decl.getType().toString());
+			if (decl.isVarargs())
+				sig.append("...");
+		}
+		sig.append(')');
+		if (!method.isConstructor() && method.getReturnType2() != null)
+			sig.append(" : ").append(method.getReturnType2().toString());
+		return sig.toString();
+	}
+	public String ProcessOutlineHoverRequest(Integer fileId, final int startPosition) throws Exception
+	{
+		CompilationUnit cu = ActiveUnits.Get(fileId);
+		if (cu == null)
+			throw new Exception("No parsed file for id: " + fileId);
+
+		final String[] hoverText = new String[1];
+		cu.accept(new ASTVisitor()
+		{
+			@Override
+			public boolean preVisit2(ASTNode node)
+			{
+				// Only descend into nodes that enclose the requested position
+				return hoverText[0] == null &&
+						node.getStartPosition() <= startPosition && 
+						startPosition < node.getStartPosition() + node.getLength();
+			}
+			@Override
+			public boolean visit(TypeDeclaration type)
+			{
+				if (type.getStartPosition() == startPosition)
+					hoverText[0] = type.toString();
+				return true;
+			}
+			@Override
+			public boolean visit(MethodDeclaration method)
+			{
+				if (method.getStartPosition() == startPosition)
+					hoverText[0] = method.toString();
+				return true;
+			}
+		});
+		if (hoverText[0] == null)
+			throw new Exception("No outline item starts at position " + startPosition);
+		return hoverText[0];
+	}
+	public List<CompletionProposal> ProcessAutocompleteRequest(String contentFile, String typeRootId, int cursorPosition, String prefix, IProgressMonitor monitor) throws Exception 
+	{
+		ITypeRoot typeRoot = ActiveTypeRoots.Get(typeRootId);
+		if (typeRoot != null)
+		{
+			CheckCanceled(monitor);
+			SyncContents(typeRootId, typeRoot, contentFile);
+			return Autocomplete(typeRoot, cursorPosition, prefix != null ? prefix.toCharArray() : null, monitor);
 		}
 		return null;
 	}
-	private List<AutocompleteResponse.Completion> Autocomplete(ITypeRoot cu, int cursorPosition) throws JavaModelException 
+	// Proposals are kept as JDT objects and sorted by relevance; only the ones actually sent get translated
+	private List<CompletionProposal> Autocomplete(ITypeRoot cu, int cursorPosition, final char[] prefix, IProgressMonitor monitor) throws JavaModelException 
 	{
-		final List<AutocompleteResponse.Completion> proposals = new ArrayList<AutocompleteResponse.Completion>();
+		final List<CompletionProposal> proposals = new ArrayList<CompletionProposal>();
 		cu.codeComplete(cursorPosition, new CompletionRequestor()
 		{
 			@Override
 			public void accept(CompletionProposal proposal) {
-				try
-				{
-					System.out.println(proposal.toString());
-					proposals.add(translateToCompletion(proposal));
-				}
-				catch(Exception e)
-				{
-					e.printStackTrace();
-				}
+				if (Log.IsEnabled(Log.Level.Trace))
+					Log.Trace(proposal.toString());
+				if (prefix == null || MatchesPrefix(prefix, proposal))
+					proposals.add(proposal);
+			}
+		}, monitor);
+		Collections.sort(proposals, new Comparator<CompletionProposal>()
+		{
+			@Override
+			public int compare(CompletionProposal a, CompletionProposal b)
+			{
+				return Integer.compare(b.getRelevance(), a.getRelevance()); // stable, so JDT order breaks ties
 			}
-		});		
+		});
 		return proposals;
 	}
+	private static boolean MatchesPrefix(char[] prefix, CompletionProposal proposal)
+	{
+		char[] name = proposal.getName() != null ? proposal.getName() : proposal.getCompletion();
+		return prefix.length == 0 ||
+				CharOperation.prefixEquals(prefix, name, false) ||
+				CharOperation.camelCaseMatch(prefix, name);
+	}
+	public List<AutocompleteResponse.Completion> TranslateCompletions(List<CompletionProposal> proposals, int from, int to)
+	{
+		List<AutocompleteResponse.Completion> ret = new ArrayList<AutocompleteResponse.Completion>(to - from);
+		for(CompletionProposal proposal: proposals.subList(from, to))
+		{
+			try
+			{
+				ret.add(translateToCompletion(proposal));
+			}
+			catch(Exception e)
+			{
+				Log.Error(e);
+			}
+		}
+		return ret;
+	}
 	private AutocompleteResponse.Completion translateToCompletion(CompletionProposal proposal)
 	{
 		AutocompleteResponse.Completion.Builder builder = AutocompleteResponse.Completion.newBuilder()
@@ -176,17 +409,18 @@ public class JavaParser {
 			builder.setName(String.copyValueOf(name));		
 		return builder.build();
 	}
-	public List<ParamHelpResponse.Signature> ProcessParamHelpRequest(String contentFile, String typeRootId, int cursorPosition) throws Exception 
+	public List<ParamHelpResponse.Signature> ProcessParamHelpRequest(String contentFile, String typeRootId, int cursorPosition, IProgressMonitor monitor) throws Exception 
 	{
-		if (ActiveTypeRoots.containsKey(typeRootId))
+		ITypeRoot typeRoot = ActiveTypeRoots.Get(typeRootId);
+		if (typeRoot != null)
 		{
-			ITypeRoot typeRoot = ActiveTypeRoots.get(typeRootId);
-			typeRoot.getBuffer().setContents(contentFile.toCharArray());
-			return ParamHelp(typeRoot, cursorPosition);			
+			CheckCanceled(monitor);
+			SyncContents(typeRootId, typeRoot, contentFile);
+			return ParamHelp(typeRoot, cursorPosition, monitor);			
 		}
 		return null;
 	}
-	private List<ParamHelpResponse.Signature> ParamHelp(ITypeRoot cu, int cursorPosition) throws JavaModelException 
+	private List<ParamHelpResponse.Signature> ParamHelp(ITypeRoot cu, int cursorPosition, IProgressMonitor monitor) throws JavaModelException 
 	{
 		final List<ParamHelpResponse.Signature> proposals = new ArrayList<ParamHelpResponse.Signature>();
 		cu.codeComplete(cursorPosition, new CompletionRequestor()
@@ -196,7 +430,8 @@ public class JavaParser {
 			{
 				try
 				{
-					System.out.println(proposal.toString());
+					if (Log.IsEnabled(Log.Level.Trace))
+						Log.Trace(proposal.toString());
 					if (proposal.getKind() == CompletionProposal.METHOD_REF)
 					{
 						char[] javaSig = proposal.getSignature();
@@ -217,10 +452,10 @@ public class JavaParser {
 				}
 				catch(Exception e)
 				{
-					e.printStackTrace();
+					Log.Error(e);
 				}
 			}
-		});		
+		}, monitor);		
 		return proposals;
 	}
 	protected final static char[] BRACKETS= { '{', '}', '(', ')', '[', ']', '<', '>' };
@@ -242,14 +477,15 @@ public class JavaParser {
 	public List<Problem> ProcessFileParseMessagesRequest(Integer fileId) 
 	{
 		List<FileParseMessagesResponse.Problem> ret = new ArrayList<FileParseMessagesResponse.Problem>(); 
-		if (ActiveUnits.containsKey(fileId))
+		CompilationUnit cu = ActiveUnits.Get(fileId);
+		if (cu != null)
 		{
-			CompilationUnit cu = ActiveUnits.get(fileId);
 			IProblem[] problems = cu.getProblems();
 
 			for(IProblem problem: problems)
 			{
-				System.out.println(problem.toString());
+				if (Log.IsEnabled(Log.Level.Trace))
+					Log.Trace(problem.toString());
 				FileParseMessagesResponse.Problem.Builder retProblem = FileParseMessagesResponse.Problem.newBuilder()
 						.setId(problem.getID())
 						.setMessage(problem.getMessage())
@@ -273,12 +509,13 @@ public class JavaParser {
 			return FileParseMessagesResponse.Problem.ProblemType.Warning;
 		return FileParseMessagesResponse.Problem.ProblemType.Message;
 	}
-	public List<JavaElement> ProcessQuickInfoRequest(String fileParseContents, String typeRootId, int cursorPosition) throws Exception 
+	public List<JavaElement> ProcessQuickInfoRequest(String fileParseContents, String typeRootId, int cursorPosition, IProgressMonitor monitor) throws Exception 
 	{
-		if (ActiveTypeRoots.containsKey(typeRootId))
+		ITypeRoot cu = ActiveTypeRoots.Get(typeRootId);
+		if (cu != null)
 		{
-			ITypeRoot cu = ActiveTypeRoots.get(typeRootId);
-			cu.getBuffer().setContents(fileParseContents.toCharArray());
+			CheckCanceled(monitor);
+			SyncContents(typeRootId, cu, fileParseContents);
 			IJavaElement[] elements = cu.codeSelect(cursorPosition, 0);
 			
 			List<JavaElement> ret = new ArrayList<JavaElement>();
@@ -286,11 +523,23 @@ public class JavaParser {
 			long flags = JavaElementLabelComposer.ALL_FULLY_QUALIFIED | JavaElementLabelComposer.ALL_DEFAULT | JavaElementLabelComposer.M_PRE_RETURNTYPE | JavaElementLabelComposer.F_PRE_TYPE_SIGNATURE;
 			for(IJavaElement element: elements)
 			{
+				CheckCanceled(monitor);
+				// Library elements cannot change under us, so their label and Javadoc are composed once
+				boolean cacheable = element.isReadOnly();
+				String handle = element.getHandleIdentifier();
+				JavaElement cached = cacheable ? QuickInfos.Get(handle) : null;
+				if (cached != null)
+				{
+					ret.add(cached);
+					continue;
+				}
+
 				StringBuffer buffer = new StringBuffer();
 				JavaElementLabelComposer composer = new JavaElementLabelComposer(buffer);
 
 				composer.appendElementLabel(element, flags);
-				System.out.println(element.getPath().toString());
+				if (Log.IsEnabled(Log.Level.Trace))
+					Log.Trace(element.getPath().toString());
 				
 				JavaElement.Builder b = JavaElement.newBuilder()
 						.setDefinition(buffer.toString());
@@ -298,30 +547,42 @@ public class JavaParser {
 				String javaDoc = null;
 				try
 				{
-					javaDoc = element.getAttachedJavadoc(null);
+					javaDoc = element.getAttachedJavadoc(monitor);
 				}
 				catch(JavaModelException jme)
 				{
-					jme.printStackTrace();
+					Log.Error(jme);
+					cacheable = false; // may be transient (e.g. remote Javadoc location unreachable)
 				}
 				if (javaDoc != null) b.setJavaDoc(javaDoc);
-				ret.add(b.build());
+				JavaElement info = b.build();
+				if (cacheable)
+					QuickInfos.Put(handle, info);
+				ret.add(info);
 			}
 			return ret;
 		}
 		return null;
 	}
-	public List<FindDefinitionResponse.JavaElement> ProcessFindDefinintionRequest(String fileParseContents, String typeRootId, int cursorPosition) throws Exception 
+	private static void CheckCanceled(IProgressMonitor monitor)
+	{
+		if (monitor != null && monitor.isCanceled())
+			throw new OperationCanceledException();
+	}
+	public List<FindDefinitionResponse.JavaElement> ProcessFindDefinintionRequest(String fileParseContents, String typeRootId, int cursorPosition, Set<String> knownContentHashes, IProgressMonitor monitor) throws Exception 
 	{
-		if (ActiveTypeRoots.containsKey(typeRootId))
+		ITypeRoot cu = ActiveTypeRoots.Get(typeRootId);
+		if (cu != null)
 		{
-			ITypeRoot cu = ActiveTypeRoots.get(typeRootId);
-			cu.getBuffer().setContents(fileParseContents.toCharArray());
+			// codeSelect and getSourceRange take no monitor, so cancellation is checked between them
+			CheckCanceled(monitor);
+			SyncContents(typeRootId, cu, fileParseContents);
 			IJavaElement[] elements = cu.codeSelect(cursorPosition, 0);
 			
 			List<FindDefinitionResponse.JavaElement> ret = new ArrayList<FindDefinitionResponse.JavaElement>();
 			for(IJavaElement element: elements)
 			{
+				CheckCanceled(monitor);
 				String definition = element.toString();				
 				String path = element.getResource() != null ?  element.getResource().getLocation().toOSString() : element.getPath().toOSString();
 				//String path = element.getPath().makeAbsolute().toOSString(); // element.getPath().toString();
@@ -348,6 +609,7 @@ public class JavaParser {
 							IOpenable op = element.getOpenable();
 							if (op != null && op instanceof IClassFile)
 							{
+								op.open(monitor); // attaching library source is the slow part, and open honours the monitor
 								IBuffer buff = op.getBuffer();
 								classFileObj = (IClassFile)op;
 								classFileName = classFileObj.getElementName();
@@ -368,17 +630,22 @@ public class JavaParser {
 				{
 					//int hashCode = classFileObj.hashCode();
 					String handle = classFileObj.getHandleIdentifier();
-					ActiveTypeRoots.put(handle, classFileObj);
+					ActiveTypeRoots.Register(handle, classFileObj);
 					
 					retItem.setFileName(classFileName);
 					retItem.setTypeRootIdentifier(TypeRootIdentifier.newBuilder()
 													.setHandle(handle)
 													.build());					
 				}
-				System.out.println(retItem.toString());
+				if (Log.IsEnabled(Log.Level.Trace))
+					Log.Trace(retItem.toString());
 				if (contents != null)
 				{
-					retItem.setFileContents(contents);
+					// Library sources do not change between navigations; send them only if the client lacks them
+					String contentHash = GetContentHash(contents);
+					retItem.setContentHash(contentHash);
+					if (!knownContentHashes.contains(contentHash))
+						retItem.setFileContents(contents);
 				}
 				ret.add(retItem.build());
 			}
@@ -386,6 +653,14 @@ public class JavaParser {
 		}
 		return null;
 	}
+	private static String GetContentHash(String contents) throws NoSuchAlgorithmException
+	{
+		byte[] digest = MessageDigest.getInstance("SHA-1").digest(contents.getBytes(StandardCharsets.UTF_8));
+		StringBuilder hash = new StringBuilder(digest.length * 2);
+		for(byte b: digest)
+			hash.append(String.format("%02x", b));
+		return hash.toString();
+	}
 	public String ProcessOpenTypeRequest(String fileName) throws Exception 
 	{
 		File file = new File(fileName);
@@ -401,15 +676,80 @@ public class JavaParser {
 		{
 			//int hashCode = javaFile.hashCode();
 			String handle = javaFile.getHandleIdentifier();
-			ActiveTypeRoots.put(handle, (ITypeRoot)javaFile);
+			ActiveTypeRoots.Acquire(handle, (ITypeRoot)javaFile);
 			return handle;
 		}
 		return null;
 	}
 	public void ProcessDisposeTypeRoot(String handle) 
 	{
-		if (ActiveTypeRoots.containsKey(handle))
-			ActiveTypeRoots.remove(handle);
+		if (ActiveTypeRoots.Release(handle))
+			DocumentVersions.remove(handle);
+	}
+	public int ProcessUpdateDocumentRequest(String typeRootId, int version, Integer baseVersion, String contents, List<TextEdit> edits) throws Exception
+	{
+		ITypeRoot typeRoot = ActiveTypeRoots.Get(typeRootId);
+		if (typeRoot == null)
+			throw new Exception("Type root is not open: " + typeRootId);
+
+		try
+		{
+			IBuffer buffer = typeRoot.getBuffer();
+			if (contents != null)
+			{
+				buffer.setContents(contents.toCharArray());
+			}
+			else
+			{
+				Integer current = DocumentVersions.get(typeRootId);
+				if (current == null || baseVersion == null || !current.equals(baseVersion))
+					throw new Exception("Document version mismatch (server has " + current + ", edits are against " + baseVersion + "); full contents required");
+
+				// Check every range up front so a bad edit can't leave the buffer half updated
+				int length = buffer.getLength();
+				for(TextEdit edit: edits)
+				{
+					if (edit.getStart() < 0 || edit.getLength() < 0 || edit.getLength() > length - edit.getStart())
+						throw new Exception("Edit at " + edit.getStart() + " of length " + edit.getLength() + " is outside of the document (length " + length + "); full contents required");
+					length += edit.getText().length() - edit.getLength();
+				}
+
+				for(TextEdit edit: edits)
+					buffer.replace(edit.getStart(), edit.getLength(), edit.getText());
+			}
+		}
+		catch(Exception e)
+		{
+			DocumentVersions.remove(typeRootId); // the buffer can't be trusted anymore, so the client must resync
+			throw e;
+		}
+		DocumentVersions.put(typeRootId, version);
+		return version;
+	}
+	public Integer GetDocumentVersion(String typeRootId)
+	{
+		return DocumentVersions.get(typeRootId);
+	}
+	public Integer ProcessReconcile(String typeRootId) throws Exception
+	{
+		ITypeRoot typeRoot = ActiveTypeRoots.Get(typeRootId);
+		if (typeRoot == null || typeRoot.getResource() == null)
+			return null; // closed meanwhile, or a class file (nothing to report)
+		return ProcessParseRequest(typeRoot.getBuffer().getContents(), typeRoot.getResource().getLocation().toOSString());
+	}
+	public String GetContents(String typeRootId, String contents) throws JavaModelException
+	{
+		if (contents != null)
+			return contents;
+		ITypeRoot typeRoot = ActiveTypeRoots.Get(typeRootId);
+		return typeRoot != null ? typeRoot.getBuffer().getContents() : "";
+	}
+	private void SyncContents(String typeRootId, ITypeRoot typeRoot, String contents) throws JavaModelException
+	{
+		if (contents == null)
+			return; // buffer is kept current by UpdateDocument requests
+		typeRoot.getBuffer().setContents(contents.toCharArray());
+		DocumentVersions.remove(typeRootId); // full contents bypass versioning, so the next delta must resync
 	}
 	public String ProcessAddTypeRequest(String handle) 
 	{
@@ -417,7 +757,7 @@ public class JavaParser {
 		if (javaFile instanceof ITypeRoot)
 		{
 			String newHandle = javaFile.getHandleIdentifier();
-			ActiveTypeRoots.put(newHandle, (ITypeRoot)javaFile);
+			ActiveTypeRoots.Acquire(newHandle, (ITypeRoot)javaFile);
 			return newHandle;
 		}
 		return null;
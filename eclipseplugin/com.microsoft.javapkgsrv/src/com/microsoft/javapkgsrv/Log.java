@@ -0,0 +1,56 @@
+// Copyright (c) Microsoft.  All Rights Reserved.  Licensed under the MIT License.  See LICENSE file in the project root for license information.
+
+package com.microsoft.javapkgsrv;
+
+// Console logging filtered by a process-wide level (set with -log on the command line). Callers
+// building expensive messages on hot paths should check IsEnabled first.
+public class Log {
+	public enum Level
+	{
+		Off,
+		Error,
+		Info,  // startup and background work (default)
+		Debug, // one line per request
+		Trace  // per-proposal / per-problem dumps
+	}
+
+	private static volatile Level Current = Level.Info;
+
+	public static void SetLevel(Level level)
+	{
+		Current = level;
+	}
+	public static Level ParseLevel(String name)
+	{
+		for(Level level: Level.values())
+		{
+			if (level.name().equalsIgnoreCase(name))
+				return level;
+		}
+		throw new IllegalArgumentException("Unknown log level: " + name);
+	}
+	public static boolean IsEnabled(Level level)
+	{
+		return level.ordinal() <= Current.ordinal();
+	}
+	public static void Error(Throwable e)
+	{
+		if (IsEnabled(Level.Error))
+			e.printStackTrace();
+	}
+	public static void Info(String message)
+	{
+		if (IsEnabled(Level.Info))
+			System.out.println(message);
+	}
+	public static void Debug(String message)
+	{
+		if (IsEnabled(Level.Debug))
+			System.out.println(message);
+	}
+	public static void Trace(String message)
+	{
+		if (IsEnabled(Level.Trace))
+			System.out.println(message);
+	}
+}
@@ -2,20 +2,41 @@
 
 package com.microsoft.javapkgsrv;
 
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
-import java.nio.channels.Channels;
+import java.net.InetAddress;
+import java.net.Socket;
 
 import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
 
+// Length-prefixed (varint32) protobuf messages over one of:
+//   <name>      Windows named pipe \\.\pipe\<name> (default)
+//   tcp:<port>  TCP connection to the loopback interface
+//   stdio       the process' standard input/output; console logging is moved to stderr
+// or over caller-supplied streams (replay benchmark) or a caller-opened file such as a FIFO (pipe benchmark).
+//
+// With CaptureFileName set, every request read is also appended to that file as
+// varint64 microseconds since capture start, varint32 length, serialized Protocol.Request.
 public class PipeChannel {
 	public String PipeName = "javapkgsrv";
+	public String CaptureFileName = null;
+	public int MaxMessageSize = 64 * 1024 * 1024;
 	private CodedOutputStream CPipeOut = null;
 	private CodedInputStream CPipeIn = null;
-	private RandomAccessFile Pipe = null;
-	
+	private Closeable Pipe = null;
+	private CodedOutputStream CaptureOut = null;
+	private OutputStream CaptureFile = null;
+	private long CaptureStart = 0;
+
 	public PipeChannel()
 	{
 	}
@@ -23,28 +44,103 @@ public class PipeChannel {
 	{
 		PipeName = pipeName;
 	}
-	public void Init() throws FileNotFoundException
+	public PipeChannel(InputStream in, OutputStream out)
+	{
+		PipeName = null;
+		Connect(in, out);
+	}
+	public PipeChannel(RandomAccessFile file) throws IOException
 	{
-		Pipe = new RandomAccessFile("\\\\.\\pipe\\" + PipeName, "rw");
-		CPipeOut = CodedOutputStream.newInstance(Channels.newOutputStream(Pipe.getChannel()));
-		CPipeIn = CodedInputStream.newInstance(Channels.newInputStream(Pipe.getChannel()));		
+		PipeName = null;
+		Connect(file);
+	}
+	public void Init() throws FileNotFoundException, IOException
+	{
+		if (CaptureFileName != null)
+		{
+			CaptureFile = new FileOutputStream(CaptureFileName);
+			CaptureOut = CodedOutputStream.newInstance(CaptureFile);
+			CaptureStart = System.nanoTime();
+		}
+
+		if (PipeName == null)
+		{
+			// Streams were supplied by the caller
+		}
+		else if (PipeName.startsWith("tcp:"))
+		{
+			int port = Integer.parseInt(PipeName.substring("tcp:".length()));
+			// A plain socket rather than a SocketChannel, whose streams serialize reads and writes on its blocking lock
+			Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+			socket.setTcpNoDelay(true);
+			Pipe = socket;
+			CPipeOut = CodedOutputStream.newInstance(socket.getOutputStream());
+			CPipeIn = CodedInputStream.newInstance(socket.getInputStream());
+		}
+		else if (PipeName.equals("stdio"))
+		{
+			// Start has already moved System.out to stderr, before anything was logged
+			Connect(new FileInputStream(FileDescriptor.in), new FileOutputStream(FileDescriptor.out));
+		}
+		else
+		{
+			Connect(new RandomAccessFile("\\\\.\\pipe\\" + PipeName, "rw"));
+		}
+		CPipeIn.setSizeLimit(Integer.MAX_VALUE); // ReadMessage enforces MaxMessageSize on each message
+	}
+	private void Connect(RandomAccessFile file) throws IOException
+	{
+		// Not through file.getChannel(): FileChannel reads and writes share one lock, so a response written
+		// by a worker (or a pushed notification) would wait for the reader thread's blocked read to return
+		Pipe = file;
+		CPipeOut = CodedOutputStream.newInstance(new FileOutputStream(file.getFD()));
+		CPipeIn = CodedInputStream.newInstance(new FileInputStream(file.getFD()));
+	}
+	private void Connect(final InputStream in, final OutputStream out)
+	{
+		Pipe = new Closeable()
+		{
+			@Override
+			public void close() throws IOException
+			{
+				in.close();
+				out.close();
+			}
+		};
+		CPipeOut = CodedOutputStream.newInstance(out);
+		CPipeIn = CodedInputStream.newInstance(in);
 	}
 	public Protocol.Request ReadMessage() throws IOException
 	{
-		int len = CPipeIn.readInt32();
-		byte[] msgBytes = CPipeIn.readRawBytes(len);
-		Protocol.Request msg = Protocol.Request.parseFrom(msgBytes);
-		return msg;		
+		int len = CPipeIn.readRawVarint32();
+		if (len < 0 || len > MaxMessageSize)
+			throw new InvalidProtocolBufferException("Message size " + len + " is outside of the allowed range (max " + MaxMessageSize + ")");
+
+		// Parse straight out of the stream's reusable buffer instead of copying each message into a new array
+		int oldLimit = CPipeIn.pushLimit(len);
+		Protocol.Request msg = Protocol.Request.parseFrom(CPipeIn);
+		CPipeIn.popLimit(oldLimit);
+		CPipeIn.resetSizeCounter(); // the size limit is per message, not per connection
+
+		if (CaptureOut != null)
+		{
+			CaptureOut.writeRawVarint64((System.nanoTime() - CaptureStart) / 1000);
+			CaptureOut.writeRawVarint32(len);
+			msg.writeTo(CaptureOut);
+			CaptureOut.flush(); // keep the recording usable if the server is killed
+		}
+		return msg;
 	}
-	public void WriteMessage(Protocol.Response msg) throws IOException
+	public synchronized void WriteMessage(Protocol.Response msg) throws IOException
 	{
-		byte[] msgData = msg.toByteArray();
-		CPipeOut.writeInt32NoTag(msgData.length);
-		CPipeOut.writeRawBytes(msgData);
-		CPipeOut.flush();		
+		CPipeOut.writeRawVarint32(msg.getSerializedSize());
+		msg.writeTo(CPipeOut);
+		CPipeOut.flush();
 	}
 	public void Disconnect() throws IOException
 	{
+		if (CaptureFile != null)
+			CaptureFile.close();
 		Pipe.close();
-	}	
+	}
 }
@@ -0,0 +1,94 @@
+// Copyright (c) Microsoft.  All Rights Reserved.  Licensed under the MIT License.  See LICENSE file in the project root for license information.
+
+package com.microsoft.javapkgsrv;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+
+import com.microsoft.javapkgsrv.Protocol.Response.QuickInfoResponse.JavaElement;
+
+// LRU cache of composed QuickInfo entries (label + attached Javadoc) keyed by element handle.
+// Only read-only elements (class files from JDK and library archives) are cached since their
+// text can only change when the classpath does; any classpath change clears the cache.
+public class QuickInfoCache implements IElementChangedListener {
+	private static final int ClasspathChangeFlags =
+			IJavaElementDelta.F_CLASSPATH_CHANGED |
+			IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED |
+			IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED |
+			IJavaElementDelta.F_ADDED_TO_CLASSPATH |
+			IJavaElementDelta.F_REMOVED_FROM_CLASSPATH;
+
+	private LinkedHashMap<String, JavaElement> Entries;
+	private long Hits = 0;
+	private long Misses = 0;
+	private long Evictions = 0;
+
+	public QuickInfoCache(final int maxEntries)
+	{
+		Entries = new LinkedHashMap<String, JavaElement>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, JavaElement> eldest)
+			{
+				if (size() <= maxEntries)
+					return false;
+				++Evictions;
+				return true;
+			}
+		};
+	}
+	public synchronized JavaElement Get(String handle)
+	{
+		JavaElement entry = Entries.get(handle);
+		if (entry != null)
+			++Hits;
+		else
+			++Misses;
+		return entry;
+	}
+	public synchronized void Put(String handle, JavaElement entry)
+	{
+		Entries.put(handle, entry);
+	}
+	public synchronized void Clear()
+	{
+		Entries.clear();
+	}
+	public synchronized Protocol.Response.StatsResponse.CacheStats GetStats()
+	{
+		return Protocol.Response.StatsResponse.CacheStats.newBuilder()
+				.setEntries(Entries.size())
+				.setHits(Hits)
+				.setMisses(Misses)
+				.setEvictions(Evictions)
+				.build();
+	}
+	@Override
+	public void elementChanged(ElementChangedEvent event)
+	{
+		if (AffectsClasspath(event.getDelta()))
+		{
+			Log.Info("Classpath changed; clearing QuickInfo cache");
+			Clear();
+		}
+	}
+	static boolean AffectsClasspath(IJavaElementDelta delta)
+	{
+		if ((delta.getFlags() & ClasspathChangeFlags) != 0)
+			return true;
+		for(IJavaElementDelta child: delta.getAffectedChildren())
+		{
+			// Classpath flags are reported on projects and package fragment roots; no need to go deeper
+			if (child.getElement().getElementType() <= IJavaElement.PACKAGE_FRAGMENT_ROOT && AffectsClasspath(child))
+				return true;
+		}
+		return false;
+	}
+}
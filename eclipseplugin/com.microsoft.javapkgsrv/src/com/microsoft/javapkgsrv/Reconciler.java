@@ -0,0 +1,157 @@
+// Copyright (c) Microsoft.  All Rights Reserved.  Licensed under the MIT License.  See LICENSE file in the project root for license information.
+
+package com.microsoft.javapkgsrv;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.microsoft.javapkgsrv.Protocol.TypeRootIdentifier;
+import com.microsoft.javapkgsrv.Protocol.Response.FileParseMessagesResponse;
+import com.microsoft.javapkgsrv.Protocol.Response.ResponseType;
+
+// Re-parses edited type roots once they have been quiet for the configured delay and pushes
+// the resulting problems to the client, instead of waiting for FileParse + FileParseMessages.
+public class Reconciler {
+	private JavaParser Parser = null;
+	private PipeChannel Pipe = null;
+	private ScheduledExecutorService Timer = null;
+	private int DelayMilliseconds = 500;
+	private HashMap<String, ScheduledFuture<?>> Pending = new HashMap<String, ScheduledFuture<?>>();
+	private HashMap<String, Integer> Units = new HashMap<String, Integer>();
+	private HashSet<String> Reconciling = new HashSet<String>(); // dropped by Cancel/Shutdown to discard a reconcile in progress
+
+	public Reconciler(JavaParser parser, PipeChannel pipe)
+	{
+		Parser = parser;
+		Pipe = pipe;
+	}
+	public synchronized void Configure(boolean enabled, int delayMilliseconds)
+	{
+		DelayMilliseconds = delayMilliseconds;
+		if (enabled && Timer == null)
+		{
+			Timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+			{
+				@Override
+				public Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, "javapkgsrv-reconciler");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		else if (!enabled && Timer != null)
+		{
+			Shutdown();
+		}
+	}
+	public synchronized boolean IsEnabled()
+	{
+		return Timer != null;
+	}
+	public synchronized void Schedule(final String typeRootId)
+	{
+		if (Timer == null)
+			return;
+
+		// Coalesce: a newer edit restarts the quiet period
+		ScheduledFuture<?> previous = Pending.get(typeRootId);
+		if (previous != null)
+			previous.cancel(false);
+
+		Pending.put(typeRootId, Timer.schedule(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				Reconcile(typeRootId);
+			}
+		}, DelayMilliseconds, TimeUnit.MILLISECONDS));
+	}
+	public synchronized void Cancel(String typeRootId)
+	{
+		ScheduledFuture<?> previous = Pending.remove(typeRootId);
+		if (previous != null)
+			previous.cancel(false);
+
+		Reconciling.remove(typeRootId);
+		Integer unit = Units.remove(typeRootId);
+		if (unit != null)
+			Parser.ProcessDisposeFileRequest(unit);
+	}
+	public synchronized void Shutdown()
+	{
+		if (Timer == null)
+			return;
+
+		Timer.shutdownNow();
+		Timer = null;
+		Pending.clear();
+		Reconciling.clear();
+		for(Integer unit: Units.values())
+			Parser.ProcessDisposeFileRequest(unit);
+		Units.clear();
+	}
+	private void Reconcile(String typeRootId)
+	{
+		synchronized(this)
+		{
+			Pending.remove(typeRootId);
+			Reconciling.add(typeRootId);
+		}
+
+		try
+		{
+			Integer version = Parser.GetDocumentVersion(typeRootId);
+			Integer unit = Parser.ProcessReconcile(typeRootId);
+			if (unit == null)
+				return;
+
+			synchronized(this)
+			{
+				// Closed or shut down while parsing: nobody would dispose the unit and the document is gone
+				if (Timer == null || !Reconciling.remove(typeRootId))
+				{
+					Parser.ProcessDisposeFileRequest(unit);
+					return;
+				}
+
+				// The cache hands out one reference per parse; keep only the latest one per document
+				Integer previous = Units.put(typeRootId, unit);
+				if (previous != null)
+					Parser.ProcessDisposeFileRequest(previous);
+			}
+
+			FileParseMessagesResponse.Builder messages = FileParseMessagesResponse.newBuilder()
+					.addAllProblems(Parser.ProcessFileParseMessagesRequest(unit))
+					.setTypeRootIdentifier(TypeRootIdentifier.newBuilder()
+							.setHandle(typeRootId)
+							.build());
+			if (version != null)
+				messages.setVersion(version);
+
+			Pipe.WriteMessage(Protocol.Response.newBuilder()
+					.setResponseType(ResponseType.FileParseMessages)
+					.setNotification(true)
+					.setFileParseMessagesResponse(messages.build())
+					.build());
+		}
+		catch(Exception e)
+		{
+			Log.Error(e);
+		}
+		finally
+		{
+			synchronized(this)
+			{
+				Reconciling.remove(typeRootId);
+			}
+		}
+	}
+}
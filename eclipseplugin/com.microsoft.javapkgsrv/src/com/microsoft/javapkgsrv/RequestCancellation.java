@@ -0,0 +1,62 @@
+// Copyright (c) Microsoft.  All Rights Reserved.  Licensed under the MIT License.  See LICENSE file in the project root for license information.
+
+package com.microsoft.javapkgsrv;
+
+import java.util.HashMap;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+// Tracks a progress monitor per in-flight request so it can be canceled explicitly (Cancel request)
+// or implicitly when a newer request of the same kind arrives for the same type root.
+public class RequestCancellation {
+	private HashMap<Integer, IProgressMonitor> MonitorsById = new HashMap<Integer, IProgressMonitor>();
+	private HashMap<String, IProgressMonitor> MonitorsByTypeRoot = new HashMap<String, IProgressMonitor>();
+
+	public synchronized IProgressMonitor Begin(Protocol.Request request)
+	{
+		IProgressMonitor monitor = new NullProgressMonitor();
+		if (request.hasRequestId())
+			MonitorsById.put(request.getRequestId(), monitor);
+
+		String supersedeKey = GetSupersedeKey(request);
+		if (supersedeKey != null)
+		{
+			IProgressMonitor previous = MonitorsByTypeRoot.put(supersedeKey, monitor);
+			if (previous != null)
+				previous.setCanceled(true);
+		}
+		return monitor;
+	}
+	public synchronized void End(Protocol.Request request, IProgressMonitor monitor)
+	{
+		if (request.hasRequestId() && MonitorsById.get(request.getRequestId()) == monitor)
+			MonitorsById.remove(request.getRequestId());
+
+		String supersedeKey = GetSupersedeKey(request);
+		if (supersedeKey != null && MonitorsByTypeRoot.get(supersedeKey) == monitor)
+			MonitorsByTypeRoot.remove(supersedeKey);
+	}
+	public synchronized boolean Cancel(int requestId)
+	{
+		IProgressMonitor monitor = MonitorsById.get(requestId);
+		if (monitor == null)
+			return false;
+		monitor.setCanceled(true);
+		return true;
+	}
+	private static String GetSupersedeKey(Protocol.Request request)
+	{
+		switch(request.getRequestType())
+		{
+		case Autocomplete:
+			return "Autocomplete:" + request.getAutocompleteRequest().getTypeRootIdentifier().getHandle();
+		case ParamHelp:
+			return "ParamHelp:" + request.getParamHelpRequest().getTypeRootIdentifier().getHandle();
+		case QuickInfo:
+			return "QuickInfo:" + request.getQuickInfoRequest().getTypeRootIdentifier().getHandle();
+		default:
+			return null;
+		}
+	}
+}
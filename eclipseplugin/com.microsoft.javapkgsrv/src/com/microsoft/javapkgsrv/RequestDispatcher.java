@@ -0,0 +1,98 @@
+// Copyright (c) Microsoft.  All Rights Reserved.  Licensed under the MIT License.  See LICENSE file in the project root for license information.
+
+package com.microsoft.javapkgsrv;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs requests on a fixed pool of worker threads. Work items sharing a document key
+// execute one at a time in submission order; different documents run in parallel.
+public class RequestDispatcher {
+	private ExecutorService Workers = null;
+	private HashMap<String, ArrayDeque<Runnable>> PendingByDocument = new HashMap<String, ArrayDeque<Runnable>>();
+	private int Outstanding = 0;
+
+	public RequestDispatcher(int workerCount)
+	{
+		final AtomicInteger threadId = new AtomicInteger();
+		Workers = Executors.newFixedThreadPool(workerCount, new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, "javapkgsrv-worker-" + threadId.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+	public void Submit(final String documentKey, final Runnable work)
+	{
+		synchronized(this)
+		{
+			++Outstanding;
+			if (documentKey != null)
+			{
+				ArrayDeque<Runnable> queue = PendingByDocument.get(documentKey);
+				if (queue != null)
+				{
+					// Another request for this document is running; it will pick this one up when done
+					queue.addLast(work);
+					return;
+				}
+				PendingByDocument.put(documentKey, new ArrayDeque<Runnable>());
+			}
+		}
+		Workers.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				RunChain(documentKey, work);
+			}
+		});
+	}
+	private void RunChain(String documentKey, Runnable work)
+	{
+		while (work != null)
+		{
+			try
+			{
+				work.run();
+			}
+			catch(RuntimeException e)
+			{
+				Log.Error(e);
+			}
+
+			synchronized(this)
+			{
+				if (--Outstanding == 0)
+					notifyAll();
+
+				work = null;
+				if (documentKey != null)
+				{
+					ArrayDeque<Runnable> queue = PendingByDocument.get(documentKey);
+					if (queue.isEmpty())
+						PendingByDocument.remove(documentKey);
+					else
+						work = queue.removeFirst();
+				}
+			}
+		}
+	}
+	public synchronized void Drain() throws InterruptedException
+	{
+		while (Outstanding != 0)
+			wait();
+	}
+	public void Shutdown()
+	{
+		Workers.shutdown();
+	}
+}
@@ -0,0 +1,182 @@
+// Copyright (c) Microsoft.  All Rights Reserved.  Licensed under the MIT License.  See LICENSE file in the project root for license information.
+
+package com.microsoft.javapkgsrv;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import com.microsoft.javapkgsrv.Protocol.Request.RequestType;
+import com.microsoft.javapkgsrv.Protocol.Response.StatsResponse.HistogramStats;
+import com.microsoft.javapkgsrv.Protocol.Response.StatsResponse.RequestStats;
+
+// Per request type histograms of queue, processing and write latency and of message sizes.
+// Recording is a few array increments under a lock, cheap enough to stay on for every request.
+public class RequestMetrics {
+	// Four sub-buckets per power of two keep percentiles within 25% of the recorded value
+	private static class Histogram
+	{
+		private static final int SubBucketBits = 2;
+		private static final int SubBuckets = 1 << SubBucketBits;
+
+		long[] Buckets = new long[64 * SubBuckets];
+		long Count = 0;
+		long Sum = 0;
+		long Max = 0;
+
+		void Add(long value)
+		{
+			value = Math.max(value, 0);
+			++Buckets[BucketOf(value)];
+			++Count;
+			Sum += value;
+			Max = Math.max(Max, value);
+		}
+		long Percentile(double percentile)
+		{
+			long rank = (long)Math.ceil(percentile * Count);
+			long seen = 0;
+			for(int i = 0; i < Buckets.length; ++i)
+			{
+				seen += Buckets[i];
+				if (seen >= rank && seen > 0)
+					return Math.min(UpperBound(i), Max);
+			}
+			return Max;
+		}
+		HistogramStats ToStats(long divisor)
+		{
+			return HistogramStats.newBuilder()
+					.setCount(Count)
+					.setMean(Count > 0 ? Sum / Count / divisor : 0)
+					.setP50(Percentile(0.50) / divisor)
+					.setP99(Percentile(0.99) / divisor)
+					.setMax(Max / divisor)
+					.build();
+		}
+		private static int BucketOf(long value)
+		{
+			if (value < SubBuckets)
+				return (int)value;
+			int msb = 63 - Long.numberOfLeadingZeros(value);
+			int sub = (int)((value >>> (msb - SubBucketBits)) & (SubBuckets - 1));
+			return (msb - SubBucketBits + 1) * SubBuckets + sub;
+		}
+		private static long UpperBound(int bucket)
+		{
+			if (bucket < SubBuckets)
+				return bucket;
+			int msb = bucket / SubBuckets + SubBucketBits - 1;
+			long width = 1L << (msb - SubBucketBits);
+			return (SubBuckets + bucket % SubBuckets) * width + width - 1;
+		}
+	}
+	private static class Entry
+	{
+		Histogram Queue = new Histogram();
+		Histogram Process = new Histogram();
+		Histogram Write = new Histogram();
+		Histogram BytesIn = new Histogram();
+		Histogram BytesOut = new Histogram();
+		Histogram Allocated = new Histogram();
+	}
+	public interface Listener
+	{
+		void Processed(RequestType requestType, long queueNanos, long processNanos, long allocatedBytes);
+	}
+
+	private Map<RequestType, Entry> Entries = new EnumMap<RequestType, Entry>(RequestType.class);
+	private Listener ProcessedListener = null;
+	private volatile Method AllocatedBytesMethod = null;
+
+	public synchronized void SetListener(Listener listener)
+	{
+		ProcessedListener = listener;
+	}
+	// HotSpot counts the bytes each thread allocates; com.sun.management is not visible to the bundle,
+	// so the counter is looked up reflectively. Meant for benchmarks, it costs a reflective call per request.
+	public boolean TrackAllocations()
+	{
+		Object threads = ManagementFactory.getThreadMXBean();
+		for(Class<?> type = threads.getClass(); type != null; type = type.getSuperclass())
+		{
+			for(Class<?> iface: type.getInterfaces())
+			{
+				if (!iface.getName().equals("com.sun.management.ThreadMXBean"))
+					continue;
+				try
+				{
+					AllocatedBytesMethod = iface.getMethod("getThreadAllocatedBytes", long.class);
+					return true;
+				}
+				catch(NoSuchMethodException e)
+				{
+					return false;
+				}
+			}
+		}
+		return false;
+	}
+	// Bytes allocated so far by the calling thread, or 0 unless allocations are tracked
+	public long GetAllocatedBytes()
+	{
+		Method method = AllocatedBytesMethod;
+		if (method == null)
+			return 0;
+		try
+		{
+			return (Long)method.invoke(ManagementFactory.getThreadMXBean(), Thread.currentThread().getId());
+		}
+		catch(Exception e)
+		{
+			return 0;
+		}
+	}
+	public synchronized void RecordProcessing(RequestType requestType, long queueNanos, long processNanos, int bytesIn, long allocatedBytes)
+	{
+		Entry entry = GetEntry(requestType);
+		entry.Queue.Add(queueNanos);
+		entry.Process.Add(processNanos);
+		entry.BytesIn.Add(bytesIn);
+		entry.Allocated.Add(allocatedBytes);
+		if (ProcessedListener != null)
+			ProcessedListener.Processed(requestType, queueNanos, processNanos, allocatedBytes);
+	}
+	public synchronized void RecordWrite(RequestType requestType, long writeNanos, int bytesOut)
+	{
+		Entry entry = GetEntry(requestType);
+		entry.Write.Add(writeNanos);
+		entry.BytesOut.Add(bytesOut);
+	}
+	public synchronized List<RequestStats> GetStats()
+	{
+		List<RequestStats> ret = new ArrayList<RequestStats>();
+		for(Map.Entry<RequestType, Entry> entry: Entries.entrySet())
+		{
+			RequestStats.Builder stats = RequestStats.newBuilder()
+					.setRequestType(entry.getKey())
+					.setQueueMicros(entry.getValue().Queue.ToStats(1000))
+					.setProcessMicros(entry.getValue().Process.ToStats(1000))
+					.setWriteMicros(entry.getValue().Write.ToStats(1000))
+					.setBytesIn(entry.getValue().BytesIn.ToStats(1))
+					.setBytesOut(entry.getValue().BytesOut.ToStats(1));
+			if (AllocatedBytesMethod != null)
+				stats.setAllocatedBytes(entry.getValue().Allocated.ToStats(1));
+			ret.add(stats.build());
+		}
+		return ret;
+	}
+	private Entry GetEntry(RequestType requestType)
+	{
+		Entry entry = Entries.get(requestType);
+		if (entry == null)
+		{
+			entry = new Entry();
+			Entries.put(requestType, entry);
+		}
+		return entry;
+	}
+}
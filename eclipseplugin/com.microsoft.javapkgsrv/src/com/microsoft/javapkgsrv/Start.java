@@ -13,15 +13,32 @@ public class Start implements IApplication {
 	public Object start(IApplicationContext context) throws Exception 
 	{
 		String[] args = (String[])context.getArguments().get("application.args");
-		System.out.println("Arguments:");
+		String pipeName = null;
+		String captureFileName = null;
+		int workerCount = 0;
+		for(int i = 0; i < args.length; ++i)
+		{
+			if (args[i].equalsIgnoreCase("-workers") && i + 1 < args.length)
+				workerCount = Integer.parseInt(args[++i]);
+			else if (args[i].equalsIgnoreCase("-log") && i + 1 < args.length)
+				Log.SetLevel(Log.ParseLevel(args[++i]));
+			else if (args[i].equalsIgnoreCase("-capture") && i + 1 < args.length)
+				captureFileName = args[++i]; // recording for the javapkgbench -replay benchmark
+			else
+				pipeName = args[i];
+		}
+
+		// stdout carries the protocol in stdio mode, so move console logging to stderr before anything is printed
+		if ("stdio".equals(pipeName))
+			System.setOut(System.err);
+
+		Log.Info("Arguments:");
 		for(String arg: args)
-			System.out.println("\t" + arg);
-		
-		ClientProxy proxy;
-		if (args.length == 1)
-			proxy = new ClientProxy(args[0]);
-		else
-			proxy = new ClientProxy();
+			Log.Info("\t" + arg);
+
+		PipeChannel pipe = pipeName != null ? new PipeChannel(pipeName) : new PipeChannel();
+		pipe.CaptureFileName = captureFileName;
+		ClientProxy proxy = new ClientProxy(pipe, workerCount);
 		
 		try
 		{
@@ -29,7 +46,7 @@ public class Start implements IApplication {
 		}
 		catch(IOException e)
 		{
-			e.printStackTrace();
+			Log.Error(e);
 		}
 				
 		return null;
@@ -0,0 +1,600 @@
+// Copyright (c) Microsoft.  All Rights Reserved.  Licensed under the MIT License.  See LICENSE file in the project root for license information.
+
+package com.microsoft.javapkgsrv;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.Flags;
+import org.eclipse.jdt.core.IClassFile;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IField;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IMember;
+import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.ISourceRange;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.SourceRange;
+import org.eclipse.jdt.core.compiler.CharOperation;
+
+import com.microsoft.javapkgsrv.Protocol.TypeRootIdentifier;
+import com.microsoft.javapkgsrv.Protocol.Response.SymbolSearchResponse;
+import com.microsoft.javapkgsrv.Protocol.Response.SymbolSearchResponse.Symbol.SymbolKind;
+
+// Types, methods and fields of every workspace compilation unit and every library on the projects'
+// resolved classpaths, for SymbolSearch. Symbols are kept per source file or library together with
+// its timestamp and persisted on shutdown, so a restart only rescans sources that changed. Saved
+// .java files arrive as resource deltas; classpath changes and updated libraries arrive as Java
+// element deltas. Both are re-indexed in the background.
+public class SymbolIndex implements IResourceChangeListener, IElementChangedListener {
+	private static final String SnapshotFileName = "symbols.index";
+	private static final int SnapshotVersion = 1;
+	private static final int ShutdownTimeoutSeconds = 10;
+
+	private static class Symbol
+	{
+		char[] Name;
+		char[] LowerName;
+		SymbolKind Kind;
+		String Container;
+		String FilePath;
+		String Handle;
+		int NameStart;
+		int NameLength;
+	}
+	private static class Source
+	{
+		String Stamp;
+		Symbol[] Symbols;
+	}
+	private static class Match
+	{
+		Symbol Symbol;
+		int Score;
+	}
+	// Higher score first, then shorter and alphabetically smaller names
+	private static final Comparator<Match> BestFirst = new Comparator<Match>()
+	{
+		@Override
+		public int compare(Match a, Match b)
+		{
+			if (a.Score != b.Score)
+				return b.Score - a.Score;
+			if (a.Symbol.Name.length != b.Symbol.Name.length)
+				return a.Symbol.Name.length - b.Symbol.Name.length;
+			return CharOperation.compareTo(a.Symbol.Name, b.Symbol.Name);
+		}
+	};
+
+	private JavaParser Parser = null;
+	private Map<String, Source> Sources = new ConcurrentHashMap<String, Source>();
+	private ExecutorService Indexer = null;
+	private volatile boolean Complete = false;
+	private volatile boolean BuildQueued = false;
+
+	public SymbolIndex(JavaParser parser)
+	{
+		Parser = parser;
+	}
+	public void Start()
+	{
+		Indexer = Executors.newSingleThreadExecutor(new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, "javapkgsrv-symbol-index");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		Indexer.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				Sources.putAll(Load()); // searchable right away, then brought up to date
+				Build();
+			}
+		});
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(this, IResourceChangeEvent.POST_CHANGE);
+		JavaCore.addElementChangedListener(this, ElementChangedEvent.POST_CHANGE);
+	}
+	public void Shutdown()
+	{
+		ExecutorService indexer = Indexer;
+		if (indexer == null)
+			return;
+
+		ResourcesPlugin.getWorkspace().removeResourceChangeListener(this);
+		JavaCore.removeElementChangedListener(this);
+		Indexer = null;
+		indexer.shutdownNow();
+		try
+		{
+			// The indexer saves too when it finishes a build; both must not write the snapshot at once
+			if (!indexer.awaitTermination(ShutdownTimeoutSeconds, TimeUnit.SECONDS))
+			{
+				Log.Info("Symbol index still busy after " + ShutdownTimeoutSeconds + " s; not saved");
+				return;
+			}
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return;
+		}
+		Save(); // sources not rescanned yet keep their old stamp and are rescanned on the next start
+	}
+	public boolean IsComplete()
+	{
+		return Complete;
+	}
+	public List<SymbolSearchResponse.Symbol> Search(String query, int maxResults, boolean typesOnly)
+	{
+		char[] pattern = query.toCharArray();
+		char[] lowerPattern = query.toLowerCase().toCharArray();
+
+		// Keep only the best maxResults candidates; the worst of them sits at the head
+		PriorityQueue<Match> best = new PriorityQueue<Match>(Math.max(maxResults, 1), Collections.reverseOrder(BestFirst));
+		Match candidate = new Match();
+		for(Source source: Sources.values())
+		{
+			for(Symbol symbol: source.Symbols)
+			{
+				if (typesOnly && symbol.Kind != SymbolKind.Type)
+					continue;
+
+				candidate.Symbol = symbol;
+				candidate.Score = Score(pattern, lowerPattern, symbol);
+				if (candidate.Score <= 0)
+					continue;
+
+				if (best.size() < maxResults)
+				{
+					best.add(candidate);
+					candidate = new Match();
+				}
+				else if (maxResults > 0 && BestFirst.compare(candidate, best.peek()) < 0)
+				{
+					Match worst = best.poll();
+					best.add(candidate);
+					candidate = worst;
+				}
+			}
+		}
+
+		List<Match> matches = new ArrayList<Match>(best);
+		Collections.sort(matches, BestFirst);
+		List<SymbolSearchResponse.Symbol> ret = new ArrayList<SymbolSearchResponse.Symbol>();
+		for(Match match: matches)
+			ret.add(Translate(match.Symbol));
+		return ret;
+	}
+	private static int Score(char[] pattern, char[] lowerPattern, Symbol symbol)
+	{
+		char[] name = symbol.LowerName;
+		if (lowerPattern.length > name.length)
+			return 0;
+		if (CharOperation.prefixEquals(lowerPattern, name, true))
+			return lowerPattern.length == name.length ? 100 : 80;
+		if (CharOperation.camelCaseMatch(pattern, symbol.Name))
+			return 60;
+		if (CharOperation.indexOf(lowerPattern, name, true) >= 0)
+			return 40;
+
+		// Every pattern character in order, e.g. "hmap" for "HashMap"
+		int next = 0;
+		for(int i = 0; i < name.length && next < lowerPattern.length; ++i)
+		{
+			if (name[i] == lowerPattern[next])
+				++next;
+		}
+		return next == lowerPattern.length ? 20 : 0;
+	}
+	private static SymbolSearchResponse.Symbol Translate(Symbol symbol)
+	{
+		SymbolSearchResponse.Symbol.Builder ret = SymbolSearchResponse.Symbol.newBuilder()
+				.setName(new String(symbol.Name))
+				.setKind(symbol.Kind)
+				.setFilePath(symbol.FilePath)
+				.setTypeRootIdentifier(TypeRootIdentifier.newBuilder()
+						.setHandle(symbol.Handle)
+						.build())
+				.setPositionStart(symbol.NameStart)
+				.setPositionLength(symbol.NameLength);
+		if (!symbol.Container.isEmpty())
+			ret.setContainer(symbol.Container);
+		return ret.build();
+	}
+	private void Build()
+	{
+		long start = System.currentTimeMillis();
+		try
+		{
+			Set<String> live = new HashSet<String>();
+			for(IJavaProject project: Parser.JavaModel.getJavaProjects())
+			{
+				for(IClasspathEntry entry: project.getResolvedClasspath(true))
+				{
+					if (Thread.currentThread().isInterrupted())
+						return;
+
+					// Required projects are indexed on their own; their sources are not reached twice
+					if (entry.getEntryKind() == IClasspathEntry.CPE_SOURCE)
+					{
+						for(IPackageFragmentRoot root: project.findPackageFragmentRoots(entry))
+						{
+							for(IJavaElement child: root.getChildren())
+							{
+								for(ICompilationUnit cu: ((IPackageFragment)child).getCompilationUnits())
+									IndexCompilationUnit(cu, live);
+							}
+						}
+					}
+					else if (entry.getEntryKind() == IClasspathEntry.CPE_LIBRARY)
+					{
+						for(IPackageFragmentRoot root: project.findPackageFragmentRoots(entry))
+							IndexLibrary(root, live);
+					}
+				}
+			}
+			Sources.keySet().retainAll(live);
+			Complete = true;
+			Save();
+
+			int count = 0;
+			for(Source source: Sources.values())
+				count += source.Symbols.length;
+			Log.Info("Symbol index ready: " + count + " symbols from " + Sources.size() + " sources in " + (System.currentTimeMillis() - start) + " ms");
+		}
+		catch(Exception e)
+		{
+			Log.Error(e);
+		}
+	}
+	private void IndexCompilationUnit(ICompilationUnit cu, Set<String> live) throws JavaModelException
+	{
+		IResource resource = cu.getResource();
+		if (resource == null || resource.getLocation() == null)
+			return;
+		String filePath = resource.getLocation().toOSString();
+		if (live != null && !live.add(filePath))
+			return;
+
+		String stamp = Long.toString(resource.getLocalTimeStamp());
+		Source existing = Sources.get(filePath);
+		if (existing != null && existing.Stamp.equals(stamp))
+			return;
+
+		List<Symbol> symbols = new ArrayList<Symbol>();
+		String handle = cu.getHandleIdentifier();
+		for(IType type: cu.getAllTypes())
+			AddType(symbols, type, filePath, handle, false);
+		Put(filePath, stamp, symbols);
+	}
+	private void IndexLibrary(IPackageFragmentRoot root, Set<String> live) throws JavaModelException
+	{
+		String filePath = root.getResource() != null && root.getResource().getLocation() != null
+				? root.getResource().getLocation().toOSString()
+				: root.getPath().toOSString();
+		if (!live.add(filePath))
+			return;
+
+		File file = new File(filePath);
+		String stamp = file.lastModified() + ":" + file.length();
+		Source existing = Sources.get(filePath);
+		if (existing != null && existing.Stamp.equals(stamp))
+			return;
+
+		List<Symbol> symbols = new ArrayList<Symbol>();
+		for(IJavaElement child: root.getChildren())
+		{
+			for(IClassFile classFile: ((IPackageFragment)child).getClassFiles())
+			{
+				if (Thread.currentThread().isInterrupted())
+					return;
+				// Member types have class files of their own; anonymous and local ones are not searchable
+				if (!IsAnonymousOrLocal(classFile.getElementName()))
+					AddType(symbols, classFile.getType(), filePath, classFile.getHandleIdentifier(), true);
+			}
+		}
+		Put(filePath, stamp, symbols);
+	}
+	private static boolean IsAnonymousOrLocal(String classFileName)
+	{
+		int dollar = classFileName.lastIndexOf('$');
+		return dollar >= 0 && dollar + 1 < classFileName.length() && Character.isDigit(classFileName.charAt(dollar + 1));
+	}
+	private static void AddType(List<Symbol> symbols, IType type, String filePath, String handle, boolean library) throws JavaModelException
+	{
+		if (!IsSearchable(type, library))
+			return;
+
+		IType declaringType = type.getDeclaringType();
+		String container = declaringType != null ? declaringType.getFullyQualifiedName('.') : type.getPackageFragment().getElementName();
+		symbols.add(CreateSymbol(type, SymbolKind.Type, container, filePath, handle, library));
+
+		String typeName = type.getFullyQualifiedName('.');
+		for(IMethod method: type.getMethods())
+		{
+			if (!method.isConstructor() && IsSearchable(method, library))
+				symbols.add(CreateSymbol(method, SymbolKind.Method, typeName, filePath, handle, library));
+		}
+		for(IField field: type.getFields())
+		{
+			if (IsSearchable(field, library))
+				symbols.add(CreateSymbol(field, SymbolKind.Field, typeName, filePath, handle, library));
+		}
+	}
+	private static boolean IsSearchable(IMember member, boolean library) throws JavaModelException
+	{
+		int flags = member.getFlags();
+		return !Flags.isSynthetic(flags) && !(library && Flags.isPrivate(flags));
+	}
+	private static Symbol CreateSymbol(IMember member, SymbolKind kind, String container, String filePath, String handle, boolean library) throws JavaModelException
+	{
+		Symbol symbol = new Symbol();
+		symbol.Name = member.getElementName().toCharArray();
+		symbol.LowerName = CharOperation.toLowerCase(symbol.Name);
+		symbol.Kind = kind;
+		symbol.Container = container;
+		symbol.FilePath = filePath;
+		symbol.Handle = handle;
+		symbol.NameStart = -1;
+
+		// Library name ranges would need the attached source to be mapped; FindDefinition does that on demand
+		ISourceRange range = library ? null : member.getNameRange();
+		if (SourceRange.isAvailable(range))
+		{
+			symbol.NameStart = range.getOffset();
+			symbol.NameLength = range.getLength();
+		}
+		return symbol;
+	}
+	private void Put(String filePath, String stamp, List<Symbol> symbols)
+	{
+		Source source = new Source();
+		source.Stamp = stamp;
+		source.Symbols = symbols.toArray(new Symbol[symbols.size()]);
+		Sources.put(filePath, source);
+	}
+	@Override
+	public void resourceChanged(IResourceChangeEvent event)
+	{
+		final List<IFile> changed = new ArrayList<IFile>();
+		final List<String> removed = new ArrayList<String>();
+		try
+		{
+			event.getDelta().accept(new IResourceDeltaVisitor()
+			{
+				@Override
+				public boolean visit(IResourceDelta delta) throws CoreException
+				{
+					IResource resource = delta.getResource();
+					if (resource.getType() != IResource.FILE)
+						return true;
+
+					if (!"java".equals(resource.getFileExtension()) || resource.getLocation() == null)
+						return false;
+					else if (delta.getKind() == IResourceDelta.REMOVED)
+						removed.add(resource.getLocation().toOSString());
+					else if (delta.getKind() == IResourceDelta.ADDED || (delta.getFlags() & IResourceDelta.CONTENT) != 0)
+						changed.add((IFile)resource); // marker-only changes are ignored
+					return false;
+				}
+			});
+		}
+		catch(CoreException e)
+		{
+			Log.Error(e);
+			return;
+		}
+		if (changed.isEmpty() && removed.isEmpty())
+			return;
+
+		ExecutorService indexer = Indexer;
+		if (indexer == null)
+			return;
+		indexer.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				for(String filePath: removed)
+					Sources.remove(filePath);
+				for(IFile file: changed)
+				{
+					try
+					{
+						IJavaElement element = JavaCore.create(file);
+						if (element instanceof ICompilationUnit && element.exists())
+							IndexCompilationUnit((ICompilationUnit)element, null);
+						else
+							Sources.remove(file.getLocation().toOSString()); // not on a source folder
+					}
+					catch(JavaModelException e)
+					{
+						Log.Error(e);
+					}
+				}
+			}
+		});
+	}
+	@Override
+	public void elementChanged(ElementChangedEvent event)
+	{
+		if (!QuickInfoCache.AffectsClasspath(event.getDelta()))
+			return;
+
+		// Edits to .classpath, resolved container changes and jars rewritten on disk come in bursts;
+		// one rebuild covers them all, and unchanged sources and libraries are skipped by their stamps
+		ExecutorService indexer = Indexer;
+		if (indexer == null || BuildQueued)
+			return;
+		BuildQueued = true;
+		indexer.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				BuildQueued = false;
+				Build();
+			}
+		});
+	}
+	private Map<String, Source> Load()
+	{
+		Map<String, Source> sources = new HashMap<String, Source>();
+		try
+		{
+			File file = Activator.getStateFile(SnapshotFileName);
+			if (!file.exists())
+				return sources;
+
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try
+			{
+				if (in.readInt() != SnapshotVersion)
+					return sources;
+
+				int sourceCount = in.readInt();
+				for(int i = 0; i < sourceCount; ++i)
+				{
+					String filePath = in.readUTF();
+					Source source = new Source();
+					source.Stamp = in.readUTF();
+					source.Symbols = new Symbol[in.readInt()];
+					for(int j = 0; j < source.Symbols.length; ++j)
+					{
+						Symbol symbol = new Symbol();
+						symbol.Name = in.readUTF().toCharArray();
+						symbol.LowerName = CharOperation.toLowerCase(symbol.Name);
+						symbol.Kind = SymbolKind.valueOf(in.readByte());
+						symbol.Container = in.readUTF();
+						symbol.FilePath = filePath;
+						symbol.Handle = in.readUTF();
+						symbol.NameStart = in.readInt();
+						symbol.NameLength = in.readInt();
+
+						// Members of one type share its container and type root; keep a single copy of each
+						if (j > 0 && symbol.Handle.equals(source.Symbols[j - 1].Handle))
+							symbol.Handle = source.Symbols[j - 1].Handle;
+						if (j > 0 && symbol.Container.equals(source.Symbols[j - 1].Container))
+							symbol.Container = source.Symbols[j - 1].Container;
+						source.Symbols[j] = symbol;
+					}
+					sources.put(filePath, source);
+				}
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		catch(Exception e)
+		{
+			Log.Error(e);
+			sources.clear(); // rebuild from scratch rather than trust a partial snapshot
+		}
+		return sources;
+	}
+	private void Save()
+	{
+		try
+		{
+			File file = Activator.getStateFile(SnapshotFileName);
+			List<Map.Entry<String, Source>> sources = new ArrayList<Map.Entry<String, Source>>(Sources.entrySet());
+
+			// Written next to the snapshot and renamed over it, so a crash mid-write leaves the previous one intact
+			File tempFile = File.createTempFile(SnapshotFileName, ".tmp", file.getParentFile());
+			try
+			{
+				Write(tempFile, sources);
+				try
+				{
+					Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				}
+				catch(AtomicMoveNotSupportedException e)
+				{
+					Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+			}
+			finally
+			{
+				Files.deleteIfExists(tempFile.toPath()); // only still there if writing or renaming failed
+			}
+		}
+		catch(Exception e)
+		{
+			Log.Error(e);
+		}
+	}
+	private static void Write(File file, List<Map.Entry<String, Source>> sources) throws IOException
+	{
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try
+		{
+			out.writeInt(SnapshotVersion);
+			out.writeInt(sources.size());
+			for(Map.Entry<String, Source> source: sources)
+			{
+				out.writeUTF(source.getKey());
+				out.writeUTF(source.getValue().Stamp);
+				out.writeInt(source.getValue().Symbols.length);
+				for(Symbol symbol: source.getValue().Symbols)
+				{
+					out.writeUTF(new String(symbol.Name));
+					out.writeByte(symbol.Kind.getNumber());
+					out.writeUTF(symbol.Container);
+					out.writeUTF(symbol.Handle);
+					out.writeInt(symbol.NameStart);
+					out.writeInt(symbol.NameLength);
+				}
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,164 @@
+// Copyright (c) Microsoft.  All Rights Reserved.  Licensed under the MIT License.  See LICENSE file in the project root for license information.
+
+package com.microsoft.javapkgsrv;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.eclipse.jdt.core.IBuffer;
+import org.eclipse.jdt.core.IClassFile;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.ITypeRoot;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+
+// Type roots the client can address by handle. Roots opened by the client (OpenTypeRoot/AddTypeRoot)
+// are reference counted and closed, buffer included, when the last reference is disposed. Class files
+// reached through FindDefinition are held without a reference; these idle roots are evicted least
+// recently used first once there are too many of them or the open buffers go over the byte budget.
+public class TypeRootRegistry {
+	private class Entry
+	{
+		ITypeRoot TypeRoot;
+		int RefCount;
+	}
+
+	private LinkedHashMap<String, Entry> Entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private int MaxIdleRoots;
+	private long MaxBufferBytes;
+	private long Evictions = 0;
+
+	public TypeRootRegistry(int maxIdleRoots, long maxBufferBytes)
+	{
+		MaxIdleRoots = maxIdleRoots;
+		MaxBufferBytes = maxBufferBytes;
+	}
+	// Adds a reference held by the client until the matching Release
+	public synchronized void Acquire(String handle, ITypeRoot typeRoot)
+	{
+		Entry entry = Entries.get(handle);
+		if (entry == null)
+		{
+			entry = new Entry();
+			entry.TypeRoot = typeRoot;
+			Entries.put(handle, entry);
+		}
+		++entry.RefCount;
+		Trim();
+	}
+	// Makes the type root addressable without holding a reference to it
+	public synchronized void Register(String handle, ITypeRoot typeRoot)
+	{
+		if (!Entries.containsKey(handle))
+		{
+			Entry entry = new Entry();
+			entry.TypeRoot = typeRoot;
+			Entries.put(handle, entry);
+		}
+		Trim();
+	}
+	public synchronized ITypeRoot Get(String handle)
+	{
+		Entry entry = Entries.get(handle);
+		if (entry != null)
+			return entry.TypeRoot;
+
+		// Idle class files may have been evicted; they are read-only, so recreating them is safe
+		IJavaElement element = JavaCore.create(handle);
+		if (element instanceof IClassFile && element.exists())
+		{
+			Register(handle, (ITypeRoot)element);
+			return (ITypeRoot)element;
+		}
+		return null;
+	}
+	// Returns true if the type root was closed and removed
+	public synchronized boolean Release(String handle)
+	{
+		Entry entry = Entries.get(handle);
+		if (entry == null || --entry.RefCount > 0)
+			return false;
+
+		Entries.remove(handle);
+		Close(entry);
+		return true;
+	}
+	public synchronized Protocol.Response.StatsResponse.TypeRootStats GetStats()
+	{
+		int referenced = 0;
+		int openBuffers = 0;
+		for(Entry entry: Entries.values())
+		{
+			if (entry.RefCount > 0)
+				++referenced;
+			if (GetBufferBytes(entry) > 0)
+				++openBuffers;
+		}
+		return Protocol.Response.StatsResponse.TypeRootStats.newBuilder()
+				.setRoots(Entries.size())
+				.setReferencedRoots(referenced)
+				.setOpenBuffers(openBuffers)
+				.setBufferBytes(GetBufferBytes())
+				.setEvictions(Evictions)
+				.build();
+	}
+	private void Trim()
+	{
+		int idleCount = 0;
+		for(Entry entry: Entries.values())
+		{
+			if (entry.RefCount <= 0)
+				++idleCount;
+		}
+		long bufferBytes = GetBufferBytes();
+
+		// Walk from least to most recently used, sparing the entry just added or touched
+		int candidates = Entries.size() - 1;
+		Iterator<Entry> eldest = Entries.values().iterator();
+		while ((idleCount > MaxIdleRoots || bufferBytes > MaxBufferBytes) && candidates-- > 0)
+		{
+			Entry victim = eldest.next();
+			if (victim.RefCount > 0)
+				continue;
+
+			bufferBytes -= GetBufferBytes(victim);
+			eldest.remove();
+			Close(victim);
+			--idleCount;
+			++Evictions;
+		}
+	}
+	private long GetBufferBytes()
+	{
+		long bytes = 0;
+		for(Entry entry: Entries.values())
+			bytes += GetBufferBytes(entry);
+		return bytes;
+	}
+	private static long GetBufferBytes(Entry entry)
+	{
+		try
+		{
+			if (!entry.TypeRoot.isOpen())
+				return 0;
+			IBuffer buffer = entry.TypeRoot.getBuffer();
+			return buffer != null && !buffer.isClosed() ? 2L * buffer.getLength() : 0; // UTF-16
+		}
+		catch(JavaModelException e)
+		{
+			return 0;
+		}
+	}
+	private static void Close(Entry entry)
+	{
+		try
+		{
+			// Closes the element's buffer too, discarding contents pushed by the client
+			entry.TypeRoot.close();
+		}
+		catch(JavaModelException e)
+		{
+			Log.Error(e);
+		}
+	}
+}
@@ -367,6 +367,65 @@ public class Coord4D
 		return AxisAlignedBB.getBoundingBox(xCoord, yCoord, zCoord, xCoord+1, yCoord+1, zCoord+1);
 	}
 
+	/**
+	 * Packs this Coord4D's x, y and z coordinates into a single long, for use as a primitive key. The dimension is
+	 * not included, so packed values should only be compared between coordinates of the same dimension.
+	 * @return the packed coordinates
+	 */
+	public long toLong()
+	{
+		return pack(xCoord, yCoord, zCoord);
+	}
+
+	/**
+	 * Creates a Coord4D from coordinates packed with pack() or toLong().
+	 * @param packed - the packed coordinates
+	 * @param dimension - dimension ID
+	 * @return the unpacked Coord4D
+	 */
+	public static Coord4D fromLong(long packed, int dimension)
+	{
+		return new Coord4D(unpackX(packed), unpackY(packed), unpackZ(packed), dimension);
+	}
+
+	/**
+	 * Packs x, y and z coordinates into a single long, using 26 bits for x and z and 12 bits for y.
+	 * @param x - x coordinate
+	 * @param y - y coordinate
+	 * @param z - z coordinate
+	 * @return the packed coordinates
+	 */
+	public static long pack(int x, int y, int z)
+	{
+		return ((long)x & 0x3FFFFFFL) << 38 | ((long)z & 0x3FFFFFFL) << 12 | ((long)y & 0xFFFL);
+	}
+
+	public static int unpackX(long packed)
+	{
+		return (int)(packed >> 38);
+	}
+
+	public static int unpackY(long packed)
+	{
+		return (int)(packed << 52 >> 52);
+	}
+
+	public static int unpackZ(long packed)
+	{
+		return (int)(packed << 26 >> 38);
+	}
+
+	/**
+	 * Gets the packed coordinates of the block adjacent to the packed coordinates on the given side.
+	 * @param packed - the packed coordinates
+	 * @param side - side to offset towards
+	 * @return the packed coordinates of the adjacent block
+	 */
+	public static long offset(long packed, ForgeDirection side)
+	{
+		return pack(unpackX(packed)+side.offsetX, unpackY(packed)+side.offsetY, unpackZ(packed)+side.offsetZ);
+	}
+
 	@Override
 	public Coord4D clone()
 	{
@@ -48,6 +48,7 @@ public class MekanismConfig
 		public static boolean enableAmbientLighting;
 		public static int ambientLightingLevel;
 		public static boolean prefilledPortableTanks;
+		public static boolean parallelNetworkTicking = false;
 	}
 
 	public static class client
@@ -1,15 +1,15 @@
 package mekanism.api.gas;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import mekanism.api.Coord4D;
 import mekanism.api.transmitters.DynamicNetwork;
+import mekanism.api.transmitters.DynamicNetwork.AcceptorCacheEntry;
 import mekanism.api.transmitters.IGridTransmitter;
 
 import net.minecraft.tileentity.TileEntity;
@@ -40,6 +40,13 @@ public class GasNetwork extends DynamicNetwork<IGasHandler, GasNetwork>
 
 	public int prevTransferAmount = 0;
 
+	private List<AcceptorCacheEntry<IGasHandler>> availableAcceptors = new ArrayList<>();
+
+	private GasDemand[] demands = new GasDemand[0];
+	private int demandCount = 0;
+	private GasStack transferStack;
+	private Gas plannedGas;
+
 	public GasNetwork() {}
 
 	public GasNetwork(Collection<GasNetwork> networks)
@@ -133,25 +140,163 @@ public class GasNetwork extends DynamicNetwork<IGasHandler, GasNetwork>
 
 	public int tickEmit(GasStack stack)
 	{
-		List<IGasHandler> availableAcceptors = new ArrayList<>();
+		int sent;
+
+		if(plannedGas != null && plannedGas == stack.getGas())
+		{
+			sent = transfer(stack);
+		}
+		else {
+			List<AcceptorCacheEntry<IGasHandler>> availableAcceptors = getAvailableAcceptors(stack.getGas());
+
+			sent = honourSimulation(availableAcceptors) ? emitBatched(availableAcceptors, stack) : emitEqually(availableAcceptors, stack);
+		}
+
+		plannedGas = null;
+
+		if(sent > 0 && FMLCommonHandler.instance().getEffectiveSide().isServer())
+		{
+			didTransfer = true;
+			transferDelay = 2;
+		}
+
+		return sent;
+	}
+
+	/**
+	 * Asks each acceptor once how much of the gas it takes, then fills them in order of increasing demand. Each acceptor
+	 * is given an equal share of what is left, capped at its demand, so no gas is offered where it would be refused.
+	 * Acceptors must honour simulated transfers, and must copy the stack they are given rather than keep it.
+	 * @param acceptors - acceptors that can receive the gas
+	 * @param stack - gas to send
+	 * @return sent
+	 */
+	public int emitBatched(List<AcceptorCacheEntry<IGasHandler>> acceptors, GasStack stack)
+	{
+		collectDemands(acceptors, stack);
+		Arrays.sort(demands, 0, demandCount);
+
+		return transfer(stack);
+	}
+
+	@Override
+	public void prepareTick()
+	{
+		plannedGas = null;
+
+		if(buffer != null && FMLCommonHandler.instance().getEffectiveSide().isServer())
+		{
+			List<AcceptorCacheEntry<IGasHandler>> availableAcceptors = getAvailableAcceptors(buffer.getGas());
+
+			//Acceptors that may not honour simulation get the equal split, which has nothing to plan
+			if(honourSimulation(availableAcceptors))
+			{
+				collectDemands(availableAcceptors, buffer);
+				plannedGas = buffer.getGas();
+			}
+		}
+	}
+
+	@Override
+	public void planTick()
+	{
+		if(plannedGas != null)
+		{
+			Arrays.sort(demands, 0, demandCount);
+		}
+	}
+
+	/**
+	 * Asks each acceptor how much of the gas it takes, with a simulated transfer.
+	 * @param acceptors - acceptors that can receive the gas
+	 * @param stack - gas to send
+	 */
+	private void collectDemands(List<AcceptorCacheEntry<IGasHandler>> acceptors, GasStack stack)
+	{
+		if(demands.length < acceptors.size())
+		{
+			GasDemand[] grown = Arrays.copyOf(demands, acceptors.size());
+
+			for(int i = demands.length; i < grown.length; i++)
+			{
+				grown[i] = new GasDemand();
+			}
 
-		availableAcceptors.addAll(getAcceptors(stack.getGas()));
+			demands = grown;
+		}
 
-		Collections.shuffle(availableAcceptors);
+		if(transferStack == null || transferStack.getGas() != stack.getGas())
+		{
+			transferStack = new GasStack(stack.getGas(), 0);
+		}
+
+		transferStack.amount = stack.amount;
+		demandCount = 0;
+
+		for(AcceptorCacheEntry<IGasHandler> entry : acceptors)
+		{
+			for(ForgeDirection side : entry.sides)
+			{
+				int needed = entry.acceptor.receiveGas(side, transferStack, false);
+
+				if(needed > 0)
+				{
+					GasDemand demand = demands[demandCount++];
+					demand.acceptor = entry.acceptor;
+					demand.side = side;
+					demand.needed = needed;
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Fills the collected acceptors, sorted by increasing demand, with the gas.
+	 * @param stack - gas to send, of the type the demands were collected for
+	 * @return sent
+	 */
+	private int transfer(GasStack stack)
+	{
+		int toSend = stack.amount;
+
+		for(int i = 0; i < demandCount && toSend > 0; i++)
+		{
+			GasDemand demand = demands[i];
+			int allotment = Math.min(toSend/(demandCount-i), demand.needed);
+
+			if(allotment > 0)
+			{
+				transferStack.amount = allotment;
+				toSend -= demand.acceptor.receiveGas(demand.side, transferStack, true);
+			}
+		}
+
+		return stack.amount-toSend;
+	}
+
+	/**
+	 * Splits the gas equally between the acceptors in random order, as networks did before batched transfer. Used when
+	 * an acceptor might not honour simulated transfers; each one gets a stack of its own.
+	 * @param acceptors - acceptors that can receive the gas
+	 * @param stack - gas to send
+	 * @return sent
+	 */
+	public int emitEqually(List<AcceptorCacheEntry<IGasHandler>> acceptors, GasStack stack)
+	{
+		Collections.shuffle(acceptors);
 
 		int toSend = stack.amount;
-		int prevSending = toSend;
 
-		if(!availableAcceptors.isEmpty())
+		if(!acceptors.isEmpty())
 		{
-			int divider = availableAcceptors.size();
+			int divider = acceptors.size();
 			int remaining = toSend % divider;
 			int sending = (toSend-remaining)/divider;
 
-			for(IGasHandler acceptor : availableAcceptors)
+			for(AcceptorCacheEntry<IGasHandler> entry : acceptors)
 			{
 				int currentSending = sending;
-				EnumSet<ForgeDirection> sides = acceptorDirections.get(Coord4D.get((TileEntity)acceptor));
 
 				if(remaining > 0)
 				{
@@ -159,11 +304,11 @@ public class GasNetwork extends DynamicNetwork<IGasHandler, GasNetwork>
 					remaining--;
 				}
 
-				for(ForgeDirection side : sides)
+				for(ForgeDirection side : entry.sides)
 				{
 					int prev = toSend;
 
-					toSend -= acceptor.receiveGas(side, new GasStack(stack.getGas(), currentSending), true);
+					toSend -= entry.acceptor.receiveGas(side, new GasStack(stack.getGas(), currentSending), true);
 
 					if(toSend < prev)
 					{
@@ -173,15 +318,7 @@ public class GasNetwork extends DynamicNetwork<IGasHandler, GasNetwork>
 			}
 		}
 
-		int sent = prevSending-toSend;
-
-		if(sent > 0 && FMLCommonHandler.instance().getEffectiveSide().isServer())
-		{
-			didTransfer = true;
-			transferDelay = 2;
-		}
-
-		return sent;
+		return stack.amount-toSend;
 	}
 
 	public int emit(GasStack stack, boolean doTransfer)
@@ -277,40 +414,73 @@ public class GasNetwork extends DynamicNetwork<IGasHandler, GasNetwork>
 		}
 	}
 
-	@Override
-	public Set<IGasHandler> getAcceptors(Object data)
+	/**
+	 * Gets the cached acceptors that can currently take the given gas on one of their connected sides. The returned
+	 * list is reused by the next call.
+	 * @param type - gas to send
+	 * @return acceptors that can receive the gas
+	 */
+	public List<AcceptorCacheEntry<IGasHandler>> getAvailableAcceptors(Gas type)
 	{
-		Gas type = (Gas)data;
-		Set<IGasHandler> toReturn = new HashSet<IGasHandler>();
-		
+		availableAcceptors.clear();
+
 		if(FMLCommonHandler.instance().getEffectiveSide().isClient())
 		{
-			return toReturn;
+			return availableAcceptors;
 		}
 
-		for(Coord4D coord : possibleAcceptors.keySet())
+		for(AcceptorCacheEntry<IGasHandler> entry : getAcceptorCache())
 		{
-			EnumSet<ForgeDirection> sides = acceptorDirections.get(coord);
-			IGasHandler acceptor = (IGasHandler)coord.getTileEntity(getWorld());
-			
-			if(sides == null || sides.isEmpty())
+			if(validateAcceptor(entry))
 			{
-				continue;
-			}
-
-			for(ForgeDirection side : sides)
-			{
-				if(acceptor != null && acceptor.canReceiveGas(side, type))
+				for(ForgeDirection side : entry.sides)
 				{
-					toReturn.add(acceptor);
-					break;
+					if(entry.acceptor.canReceiveGas(side, type))
+					{
+						availableAcceptors.add(entry);
+						break;
+					}
 				}
 			}
 		}
 
+		return availableAcceptors;
+	}
+
+	@Override
+	public Set<IGasHandler> getAcceptors(Object data)
+	{
+		Set<IGasHandler> toReturn = new HashSet<IGasHandler>();
+
+		for(AcceptorCacheEntry<IGasHandler> entry : getAvailableAcceptors((Gas)data))
+		{
+			toReturn.add(entry.acceptor);
+		}
+
 		return toReturn;
 	}
 
+	@Override
+	protected IGasHandler getAcceptorFromTile(TileEntity tile)
+	{
+		return tile instanceof IGasHandler ? (IGasHandler)tile : null;
+	}
+
+	public static class GasDemand implements Comparable<GasDemand>
+	{
+		public IGasHandler acceptor;
+
+		public ForgeDirection side;
+
+		public int needed;
+
+		@Override
+		public int compareTo(GasDemand other)
+		{
+			return Integer.compare(needed, other.needed);
+		}
+	}
+
 	public static class GasTransferEvent extends Event
 	{
 		public final GasNetwork gasNetwork;
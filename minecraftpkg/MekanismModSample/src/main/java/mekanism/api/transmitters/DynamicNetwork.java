@@ -6,6 +6,7 @@ import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
 
@@ -33,6 +34,11 @@ public abstract class DynamicNetwork<A, N extends DynamicNetwork<A, N>> implemen
 
 	private Set<DelayQueue> updateQueue = new LinkedHashSet<DelayQueue>();
 
+	private List<AcceptorCacheEntry<A>> acceptorCache = new ArrayList<>();
+	private boolean acceptorsChanged = true;
+
+	private static HashMap<Class<?>, Boolean> simulationSafe = new HashMap<Class<?>, Boolean>();
+
 	protected Range4D packetRange = null;
 
 	protected int capacity = 0;
@@ -101,6 +107,8 @@ public abstract class DynamicNetwork<A, N extends DynamicNetwork<A, N>> implemen
 
 	public void updateTransmitterOnSide(IGridTransmitter<A, N> transmitter, ForgeDirection side)
 	{
+		acceptorsChanged = true;
+
 		A acceptor = transmitter.getAcceptor(side);
 		Coord4D acceptorCoord = transmitter.coord().getFromSide(side);
 		EnumSet<ForgeDirection> directions = acceptorDirections.get(acceptorCoord);
@@ -150,9 +158,42 @@ public abstract class DynamicNetwork<A, N extends DynamicNetwork<A, N>> implemen
 		}
 		
 		transmitters.clear();
+		acceptorsChanged = true;
 		deregister();
 	}
 
+	/**
+	 * Removes a transmitter from this network along with the acceptors only it was connected to. Unlike
+	 * invalidateTransmitter() this leaves the transmitter itself alone, as it may already be gone from the world.
+	 * @param transmitter - transmitter to remove
+	 * @param coord - location of the transmitter while it was part of this network
+	 */
+	public void removeTransmitter(IGridTransmitter<A, N> transmitter, Coord4D coord)
+	{
+		acceptorsChanged = true;
+		packetRange = null;
+		transmitters.remove(transmitter);
+		transmittersAdded.remove(transmitter);
+		changedAcceptors.remove(transmitter);
+
+		for(ForgeDirection side : ForgeDirection.VALID_DIRECTIONS)
+		{
+			Coord4D acceptorCoord = coord.getFromSide(side);
+			EnumSet<ForgeDirection> directions = acceptorDirections.get(acceptorCoord);
+
+			if(directions != null)
+			{
+				directions.remove(side.getOpposite());
+
+				if(directions.isEmpty())
+				{
+					possibleAcceptors.remove(acceptorCoord);
+					acceptorDirections.remove(acceptorCoord);
+				}
+			}
+		}
+	}
+
 	public void invalidateTransmitter(IGridTransmitter<A, N> transmitter)
 	{
 		if(!worldObj.isRemote && transmitter.isValid())
@@ -188,6 +229,7 @@ public abstract class DynamicNetwork<A, N extends DynamicNetwork<A, N>> implemen
 		}
 		
 		possibleAcceptors.putAll(net.possibleAcceptors);
+		acceptorsChanged = true;
 		
 		for(Entry<Coord4D, EnumSet<ForgeDirection>> entry : net.acceptorDirections.entrySet())
 		{
@@ -314,11 +356,136 @@ public abstract class DynamicNetwork<A, N extends DynamicNetwork<A, N>> implemen
 
 	public abstract Set<A> getAcceptors(Object data);
 
+	/**
+	 * Gets every acceptor of this network with the sides it is connected on. The list is rebuilt from possibleAcceptors
+	 * only after the acceptors changed, so walking it each tick costs no world lookups or allocations. Entries may be
+	 * stale if a tile went away without its neighbours being told; check them with validateAcceptor().
+	 * @return the cached acceptors of this network
+	 */
+	protected List<AcceptorCacheEntry<A>> getAcceptorCache()
+	{
+		if(acceptorsChanged)
+		{
+			acceptorCache.clear();
+
+			for(Entry<Coord4D, A> entry : possibleAcceptors.entrySet())
+			{
+				EnumSet<ForgeDirection> sides = acceptorDirections.get(entry.getKey());
+
+				if(sides != null && !sides.isEmpty())
+				{
+					AcceptorCacheEntry<A> cached = new AcceptorCacheEntry<>();
+					cached.coord = entry.getKey();
+					cached.acceptor = entry.getValue();
+					cached.sides = sides;
+					acceptorCache.add(cached);
+				}
+			}
+
+			acceptorsChanged = false;
+		}
+
+		return acceptorCache;
+	}
+
+	/**
+	 * Checks that a cached acceptor is still loaded and in place. The world is only consulted when the acceptor's tile
+	 * is not known yet or has become invalid, and the acceptor is then wrapped anew from the tile found there.
+	 * @param entry - cached acceptor to check
+	 * @return if the acceptor can be used
+	 */
+	protected boolean validateAcceptor(AcceptorCacheEntry<A> entry)
+	{
+		if(!entry.coord.exists(worldObj))
+		{
+			return false;
+		}
+
+		if(entry.tile == null || entry.tile.isInvalid())
+		{
+			TileEntity tile = entry.coord.getTileEntity(worldObj);
+
+			if(tile == null)
+			{
+				return false;
+			}
+
+			A acceptor = getAcceptorFromTile(tile);
+
+			if(acceptor != null || entry.tile != null)
+			{
+				entry.acceptor = acceptor;
+			}
+
+			entry.tile = tile;
+		}
+
+		return entry.acceptor != null;
+	}
+
+	/**
+	 * Checks if every given acceptor is known to honour simulated transfers, so it can be asked what it takes without
+	 * being filled. Only Mekanism's own acceptors are trusted; handlers from other mods may ignore the flag.
+	 * @param acceptors - acceptors to check
+	 * @return if all of them can be probed safely
+	 */
+	protected static boolean honourSimulation(List<? extends AcceptorCacheEntry<?>> acceptors)
+	{
+		for(AcceptorCacheEntry<?> entry : acceptors)
+		{
+			Class<?> type = entry.acceptor.getClass();
+			Boolean safe = simulationSafe.get(type);
+
+			if(safe == null)
+			{
+				safe = type.getName().startsWith("mekanism.");
+				simulationSafe.put(type, safe);
+			}
+
+			if(!safe)
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Override this to let cached acceptors follow their tile when it is replaced.
+	 * @param tile - tile now at the acceptor's location
+	 * @return the acceptor for the tile, or null if it isn't one
+	 */
+	protected A getAcceptorFromTile(TileEntity tile)
+	{
+		return null;
+	}
+
+	/**
+	 * Ticks this network in three steps: prepareTick() reads what this tick's transfers depend on from the world,
+	 * planTick() works them out, and onUpdate() carries them out. TransmitterNetworkRegistry may run the steps of
+	 * different networks apart, with planTick() on another thread.
+	 */
 	public void tick()
 	{
+		prepareTick();
+		planTick();
 		onUpdate();
 	}
 
+	/**
+	 * Override this to gather what this tick's transfers depend on, such as how much each acceptor takes. Called on
+	 * the server thread.
+	 */
+	public void prepareTick() {}
+
+	/**
+	 * Override this to work out this tick's transfers from what prepareTick() gathered. It may run on a worker thread
+	 * while other networks are planned, so it must not touch the world, acceptors or anything but this network's own
+	 * planning state.
+	 */
+	public void planTick() {}
+
 	public void onUpdate()
 	{
 		if(FMLCommonHandler.instance().getEffectiveSide().isServer())
@@ -372,6 +539,24 @@ public abstract class DynamicNetwork<A, N extends DynamicNetwork<A, N>> implemen
 		updateDelay = 3;
 	}
 
+	/**
+	 * Sends all transmitters of this network to clients again, marked as a new network, so they drop the ones that
+	 * were taken out of it instead of still drawing them as part of it.
+	 */
+	public void resendTransmitters()
+	{
+		firstUpdate = true;
+		queueClientUpdate(transmitters);
+	}
+
+	public static class AcceptorCacheEntry<A>
+	{
+		public Coord4D coord;
+		public A acceptor;
+		public EnumSet<ForgeDirection> sides;
+		public TileEntity tile;
+	}
+
 	public static class TransmittersAddedEvent extends Event
 	{
 		public DynamicNetwork<?, ?> network;
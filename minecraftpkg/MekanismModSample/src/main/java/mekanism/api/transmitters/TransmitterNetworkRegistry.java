@@ -1,10 +1,20 @@
 package mekanism.api.transmitters;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import mekanism.api.Coord4D;
+import mekanism.api.MekanismConfig.general;
+import mekanism.api.util.LongHashSet;
 
+import net.minecraft.tileentity.TileEntity;
 import net.minecraftforge.common.util.ForgeDirection;
 import cpw.mods.fml.common.FMLCommonHandler;
 import cpw.mods.fml.common.eventhandler.SubscribeEvent;
@@ -23,9 +33,13 @@ public class TransmitterNetworkRegistry
 	private HashSet<DynamicNetwork> networks = new HashSet<>();
 	private HashSet<DynamicNetwork> networksToChange = new HashSet<>();
 
-	private HashSet<IGridTransmitter> invalidTransmitters = new HashSet<>();
+	private HashMap<IGridTransmitter, Coord4D> invalidTransmitters = new HashMap<>();
 	private HashMap<Coord4D, IGridTransmitter> orphanTransmitters = new HashMap<>();
 
+	private HashSet<DynamicNetwork> sharingNetworks = null;
+	private ArrayList<DynamicNetwork> planned = new ArrayList<>();
+	private ForkJoinPool planPool = null;
+
 	private Logger logger = LogManager.getLogger("MekanismTransmitters");
 
 	public static void initiate()
@@ -44,16 +58,25 @@ public class TransmitterNetworkRegistry
 		getInstance().networksToChange.clear();
 		getInstance().invalidTransmitters.clear();
 		getInstance().orphanTransmitters.clear();
+		getInstance().sharingNetworks = null;
+		getInstance().planned.clear();
+
+		if(getInstance().planPool != null)
+		{
+			getInstance().planPool.shutdown();
+			getInstance().planPool = null;
+		}
 	}
 
 	public static void invalidateTransmitter(IGridTransmitter transmitter)
 	{
-		getInstance().invalidTransmitters.add(transmitter);
+		//Remember where it was, it may no longer know once it has been removed from the world
+		getInstance().invalidTransmitters.put(transmitter, transmitter.coord());
 	}
 
 	public static void registerOrphanTransmitter(IGridTransmitter transmitter)
 	{
-		getInstance().orphanTransmitters.put(transmitter.coord(), transmitter);
+		getInstance().addOrphanTransmitter(transmitter);
 	}
 
 	public static void registerChangedNetwork(DynamicNetwork network)
@@ -66,9 +89,15 @@ public class TransmitterNetworkRegistry
 		return INSTANCE;
 	}
 
+	public void addOrphanTransmitter(IGridTransmitter transmitter)
+	{
+		orphanTransmitters.put(transmitter.coord(), transmitter);
+	}
+
 	public void registerNetwork(DynamicNetwork network)
 	{
 		networks.add(network);
+		sharingNetworks = null;
 	}
 
 	public void removeNetwork(DynamicNetwork network)
@@ -76,6 +105,7 @@ public class TransmitterNetworkRegistry
 		if(networks.contains(network))
 		{
 			networks.remove(network);
+			sharingNetworks = null;
 		}
 	}
 
@@ -96,32 +126,185 @@ public class TransmitterNetworkRegistry
 
 		commitChanges();
 
+		if(general.parallelNetworkTicking)
+		{
+			tickNetworksParallel();
+		}
+		else {
+			for(DynamicNetwork net : networks)
+			{
+				net.tick();
+			}
+		}
+	}
+
+	/**
+	 * Ticks the networks in the same order as a serial tick, but plans the transfers of networks that share no
+	 * acceptor with another network on worker threads first. Their acceptors are read beforehand and their
+	 * transfers carried out afterwards, both on the server thread. Networks that share an acceptor would each plan
+	 * with what the acceptor took before the other one filled it, so they are ticked serially in their turn.
+	 */
+	private void tickNetworksParallel()
+	{
+		HashSet<DynamicNetwork> sharing = getSharingNetworks();
+
+		for(DynamicNetwork net : networks)
+		{
+			if(!sharing.contains(net))
+			{
+				net.prepareTick();
+				planned.add(net);
+			}
+		}
+
+		if(planned.size() > PlanTask.NETWORKS_PER_TASK)
+		{
+			getPlanPool().invoke(new PlanTask(planned, 0, planned.size()));
+		}
+		else {
+			for(DynamicNetwork net : planned)
+			{
+				net.planTick();
+			}
+		}
+
+		planned.clear();
+
 		for(DynamicNetwork net : networks)
 		{
-			net.tick();
+			if(sharing.contains(net))
+			{
+				net.tick();
+			}
+			else {
+				net.onUpdate();
+			}
 		}
 	}
 
+	/**
+	 * Finds the networks that have an acceptor in common with another network. Kept until networks or their
+	 * acceptors change.
+	 * @return networks that have to be ticked serially
+	 */
+	private HashSet<DynamicNetwork> getSharingNetworks()
+	{
+		if(sharingNetworks == null)
+		{
+			sharingNetworks = new HashSet<>();
+			HashMap<Coord4D, DynamicNetwork> owners = new HashMap<>();
+
+			for(DynamicNetwork<?, ?> net : networks)
+			{
+				for(Coord4D coord : net.possibleAcceptors.keySet())
+				{
+					DynamicNetwork owner = owners.put(coord, net);
+
+					if(owner != null && owner != net)
+					{
+						sharingNetworks.add(owner);
+						sharingNetworks.add(net);
+					}
+				}
+			}
+
+			logger.debug(sharingNetworks.size() + " of " + networks.size() + " networks share acceptors and tick serially");
+		}
+
+		return sharingNetworks;
+	}
+
+	private ForkJoinPool getPlanPool()
+	{
+		if(planPool == null)
+		{
+			planPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		}
+
+		return planPool;
+	}
+
 	public void removeInvalidTransmitters()
 	{
 		if(!invalidTransmitters.isEmpty())
 		{
 			logger.debug("Dealing with " + invalidTransmitters.size() + " invalid Transmitters");
 		}
-		for(IGridTransmitter invalid : invalidTransmitters)
+
+		HashMap<DynamicNetwork, HashMap<IGridTransmitter, Coord4D>> changedNetworks = new HashMap<>();
+
+		for(Entry<IGridTransmitter, Coord4D> invalid : invalidTransmitters.entrySet())
 		{
-			if(!invalid.isOrphan())
+			if(!invalid.getKey().isOrphan())
 			{
-				DynamicNetwork n = invalid.getTransmitterNetwork();
+				DynamicNetwork n = invalid.getKey().getTransmitterNetwork();
 				if(n != null)
 				{
-					n.invalidate();
+					HashMap<IGridTransmitter, Coord4D> changed = changedNetworks.get(n);
+
+					if(changed == null)
+					{
+						changed = new HashMap<>();
+						changedNetworks.put(n, changed);
+					}
+
+					changed.put(invalid.getKey(), invalid.getValue());
 				}
 			}
 		}
+
+		for(Entry<DynamicNetwork, HashMap<IGridTransmitter, Coord4D>> entry : changedNetworks.entrySet())
+		{
+			splitNetwork(entry.getKey(), entry.getValue());
+			sharingNetworks = null;
+		}
+
 		invalidTransmitters.clear();
 	}
 
+	/**
+	 * Takes transmitters that were removed or reconnected out of their network. Pieces of the network that are no longer
+	 * connected to the rest are orphaned and rediscovered as networks of their own; the rest of the network, usually
+	 * most of it, keeps its buffer and is not walked at all. Falls back to invalidating the whole network when the
+	 * change may join it to another network, or touches too much of it for a local search to pay off. Removed
+	 * transmitters have already taken their buffer share when they left the world, and the cut off pieces take theirs
+	 * here, so the remainder only keeps what belongs to it. Clients are told to rebuild the remainder as a new network,
+	 * as they would after invalidate().
+	 */
+	public void splitNetwork(DynamicNetwork network, Map<IGridTransmitter, Coord4D> changed)
+	{
+		NetworkSplitter splitter = new NetworkSplitter(network, changed);
+
+		if(!splitter.split())
+		{
+			network.invalidate();
+			return;
+		}
+
+		for(Entry<IGridTransmitter, Coord4D> entry : changed.entrySet())
+		{
+			if(splitter.removed.contains(entry.getValue().toLong()))
+			{
+				network.removeTransmitter(entry.getKey(), entry.getValue());
+			}
+		}
+
+		for(Map<Coord4D, IGridTransmitter> piece : (List<Map<Coord4D, IGridTransmitter>>)splitter.pieces)
+		{
+			for(Entry<Coord4D, IGridTransmitter> entry : piece.entrySet())
+			{
+				network.removeTransmitter(entry.getValue(), entry.getKey());
+				network.invalidateTransmitter(entry.getValue());
+			}
+		}
+
+		logger.debug("Split " + splitter.pieces.size() + " pieces off network, " + network.getSize() + " transmitters remain");
+
+		network.updateCapacity();
+		network.clampBuffer();
+		network.resendTransmitters();
+	}
+
 	public void assignOrphans()
 	{
 		if(!orphanTransmitters.isEmpty())
@@ -178,6 +361,7 @@ public class TransmitterNetworkRegistry
 		for(DynamicNetwork network : networksToChange)
 		{
 			network.commit();
+			sharingNetworks = null;
 		}
 		
 		networksToChange.clear();
@@ -202,11 +386,306 @@ public class TransmitterNetworkRegistry
 		return strings;
 	}
 
+	/**
+	 * Plans the transfers of a range of networks, splitting it between worker threads while it is large enough.
+	 */
+	public static class PlanTask extends RecursiveAction
+	{
+		/** Fewer networks than this are planned on one thread; most plan in a few microseconds. */
+		public static final int NETWORKS_PER_TASK = 16;
+
+		public List<DynamicNetwork> nets;
+
+		public int start;
+
+		public int end;
+
+		public PlanTask(List<DynamicNetwork> networks, int from, int to)
+		{
+			nets = networks;
+			start = from;
+			end = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(end-start <= NETWORKS_PER_TASK)
+			{
+				for(int i = start; i < end; i++)
+				{
+					nets.get(i).planTick();
+				}
+
+				return;
+			}
+
+			int middle = (start+end)/2;
+
+			invokeAll(new PlanTask(nets, start, middle), new PlanTask(nets, middle, end));
+		}
+	}
+
+	/**
+	 * Works out which parts of a network are still connected after some of its transmitters were removed or changed their
+	 * connections. Every piece that lost its connection to the rest contains a neighbour of a changed transmitter, so the
+	 * search runs one breadth-first walk from each of those neighbours, in lockstep. Walks that meet are joined, and once
+	 * at most one group of walks can still grow, that group is the remainder of the network and is not walked any further.
+	 * Only the pieces that were cut off are visited completely.
+	 */
+	public static class NetworkSplitter<A, N extends DynamicNetwork<A, N>>
+	{
+		/** Past this fraction of the network changing at once, rediscovering it from scratch is cheaper. */
+		public static final double MAX_CHANGED_FRACTION = 0.5;
+
+		public N network;
+
+		public Map<IGridTransmitter<A, N>, Coord4D> changed;
+
+		public LongHashSet removed = new LongHashSet();
+
+		public List<Map<Coord4D, IGridTransmitter<A, N>>> pieces = new ArrayList<>();
+
+		public NetworkSplitter(N net, Map<IGridTransmitter<A, N>, Coord4D> changedTransmitters)
+		{
+			network = net;
+			changed = changedTransmitters;
+		}
+
+		/**
+		 * Finds the pieces cut off from the network.
+		 * @return false if the network has to be invalidated as a whole instead
+		 */
+		public boolean split()
+		{
+			if(network.getSize() == 0 || changed.size() > network.getSize() * MAX_CHANGED_FRACTION)
+			{
+				return false;
+			}
+
+			for(Entry<IGridTransmitter<A, N>, Coord4D> entry : changed.entrySet())
+			{
+				if(!entry.getKey().isValid())
+				{
+					removed.add(entry.getValue().toLong());
+				}
+			}
+
+			List<Coord4D> seeds = new ArrayList<>();
+
+			for(Entry<IGridTransmitter<A, N>, Coord4D> entry : changed.entrySet())
+			{
+				IGridTransmitter<A, N> transmitter = entry.getKey();
+				Coord4D coord = entry.getValue();
+
+				if(!removed.contains(coord.toLong()))
+				{
+					for(ForgeDirection side : ForgeDirection.VALID_DIRECTIONS)
+					{
+						Coord4D sideCoord = transmitter.getAdjacentConnectableTransmitterCoord(side);
+						IGridTransmitter<A, N> other = sideCoord != null ? getTransmitter(sideCoord) : null;
+
+						//A new connection to another network means merging, which only rediscovery does
+						if(other != null && other.getTransmitterNetwork() != null && other.getTransmitterNetwork() != network)
+						{
+							return false;
+						}
+					}
+
+					seeds.add(coord);
+				}
+
+				for(ForgeDirection side : ForgeDirection.VALID_DIRECTIONS)
+				{
+					seeds.add(coord.getFromSide(side));
+				}
+			}
+
+			HashMap<Coord4D, Integer> labels = new HashMap<>();
+			List<ArrayDeque<Coord4D>> queues = new ArrayList<>();
+			int[] parent = new int[seeds.size()];
+			int[] growing = new int[seeds.size()]; //Non-empty queues of each group, kept at the group's root
+
+			for(Coord4D seed : seeds)
+			{
+				if(!labels.containsKey(seed) && getMember(seed) != null)
+				{
+					parent[queues.size()] = queues.size();
+					growing[queues.size()] = 1;
+					labels.put(seed, queues.size());
+					queues.add(new ArrayDeque<Coord4D>());
+					queues.get(queues.size()-1).add(seed);
+				}
+			}
+
+			if(queues.isEmpty())
+			{
+				return false;
+			}
+
+			int growingGroups = queues.size();
+
+			while(growingGroups > 1)
+			{
+				for(int i = 0; i < queues.size(); i++)
+				{
+					ArrayDeque<Coord4D> queue = queues.get(i);
+					Coord4D from = queue.poll();
+
+					if(from == null)
+					{
+						continue;
+					}
+
+					IGridTransmitter<A, N> transmitter = getMember(from);
+
+					if(transmitter != null)
+					{
+						for(ForgeDirection side : ForgeDirection.VALID_DIRECTIONS)
+						{
+							Coord4D sideCoord = transmitter.getAdjacentConnectableTransmitterCoord(side);
+
+							if(sideCoord == null)
+							{
+								continue;
+							}
+
+							Integer label = labels.get(sideCoord);
+
+							if(label != null)
+							{
+								int other = find(parent, label);
+								int own = find(parent, i);
+
+								if(other != own)
+								{
+									//Two groups that could both still grow become one
+									if(growing[other] > 0 && growing[own] > 0)
+									{
+										growingGroups--;
+									}
+
+									parent[other] = own;
+									growing[own] += growing[other];
+								}
+							}
+							else if(getMember(sideCoord) != null)
+							{
+								labels.put(sideCoord, i);
+								queue.add(sideCoord);
+							}
+						}
+					}
+
+					if(queue.isEmpty() && --growing[find(parent, i)] == 0)
+					{
+						growingGroups--;
+					}
+				}
+			}
+
+			//Whatever can still grow is the rest of the network; without one, the largest piece stays
+			HashMap<Integer, Map<Coord4D, IGridTransmitter<A, N>>> byGroup = new HashMap<>();
+			int remainder = -1;
+
+			for(int i = 0; i < queues.size(); i++)
+			{
+				if(!queues.get(i).isEmpty())
+				{
+					remainder = find(parent, i);
+				}
+			}
+
+			for(Entry<Coord4D, Integer> entry : labels.entrySet())
+			{
+				int group = find(parent, entry.getValue());
+				Map<Coord4D, IGridTransmitter<A, N>> piece = byGroup.get(group);
+
+				if(piece == null)
+				{
+					piece = new HashMap<>();
+					byGroup.put(group, piece);
+				}
+
+				piece.put(entry.getKey(), getMember(entry.getKey()));
+			}
+
+			if(remainder == -1)
+			{
+				int largest = -1;
+
+				for(Entry<Integer, Map<Coord4D, IGridTransmitter<A, N>>> entry : byGroup.entrySet())
+				{
+					if(entry.getValue().size() > largest)
+					{
+						largest = entry.getValue().size();
+						remainder = entry.getKey();
+					}
+				}
+			}
+
+			for(Entry<Integer, Map<Coord4D, IGridTransmitter<A, N>>> entry : byGroup.entrySet())
+			{
+				if(entry.getKey() != remainder)
+				{
+					pieces.add(entry.getValue());
+				}
+			}
+
+			return true;
+		}
+
+		/**
+		 * Gets the transmitter at a location, if it still belongs to the network being split.
+		 * @param coord - location to check
+		 * @return the transmitter, or null
+		 */
+		public IGridTransmitter<A, N> getMember(Coord4D coord)
+		{
+			if(removed.contains(coord.toLong()))
+			{
+				return null;
+			}
+
+			IGridTransmitter<A, N> transmitter = getTransmitter(coord);
+
+			return transmitter != null && transmitter.getTransmitterNetwork() == network && transmitter.isValid() ? transmitter : null;
+		}
+
+		protected IGridTransmitter<A, N> getTransmitter(Coord4D coord)
+		{
+			TileEntity tile = coord.getTileEntity(network.getWorld());
+
+			if(tile instanceof ITransmitterTile)
+			{
+				return ((ITransmitterTile<A, N>)tile).getTransmitter();
+			}
+
+			return null;
+		}
+
+		private static int find(int[] parent, int i)
+		{
+			while(parent[i] != i)
+			{
+				parent[i] = parent[parent[i]];
+				i = parent[i];
+			}
+
+			return i;
+		}
+	}
+
+	/**
+	 * Finds every orphan transmitter connected to a starting orphan, and the existing networks they touch. The search
+	 * is a breadth-first walk over an explicit queue with visited blocks kept as packed coordinates, so long cable runs
+	 * neither grow the stack nor allocate a set entry per block.
+	 */
 	public class OrphanPathFinder<A, N extends DynamicNetwork<A, N>>
 	{
 		public IGridTransmitter<A, N> startPoint;
 
-		public HashSet<Coord4D> iterated = new HashSet<>();
+		public LongHashSet iterated = new LongHashSet();
 
 		public HashSet<IGridTransmitter<A, N>> connectedTransmitters = new HashSet<>();
 		public HashSet<N> networksFound = new HashSet<>();
@@ -218,43 +697,38 @@ public class TransmitterNetworkRegistry
 
 		public void start()
 		{
-			iterate(startPoint.coord(), ForgeDirection.UNKNOWN);
-		}
+			ArrayDeque<Coord4D> queue = new ArrayDeque<>();
+			Coord4D startCoord = startPoint.coord();
 
-		public void iterate(Coord4D from, ForgeDirection fromDirection)
-		{
-			if(iterated.contains(from))
-			{
-				return;
-			}
+			iterated.add(startCoord.toLong());
+			queue.add(startCoord);
 
-			iterated.add(from);
-			
-			if(orphanTransmitters.containsKey(from))
+			while(!queue.isEmpty())
 			{
+				Coord4D from = queue.poll();
 				IGridTransmitter<A, N> transmitter = orphanTransmitters.get(from);
-				
-				if(transmitter.isValid() && transmitter.isOrphan())
+
+				if(transmitter != null)
 				{
-					connectedTransmitters.add(transmitter);
-					transmitter.setOrphan(false);
-					
-					for(ForgeDirection direction : ForgeDirection.VALID_DIRECTIONS)
+					if(transmitter.isValid() && transmitter.isOrphan())
 					{
-						if(direction != fromDirection)
+						connectedTransmitters.add(transmitter);
+						transmitter.setOrphan(false);
+
+						for(ForgeDirection direction : ForgeDirection.VALID_DIRECTIONS)
 						{
 							Coord4D directionCoord = transmitter.getAdjacentConnectableTransmitterCoord(direction);
-							
-							if(!(directionCoord == null || iterated.contains(directionCoord)))
+
+							if(directionCoord != null && iterated.add(directionCoord.toLong()))
 							{
-								iterate(directionCoord, direction.getOpposite());
+								queue.add(directionCoord);
 							}
 						}
 					}
 				}
-			} 
-			else {
-				addNetworkToIterated(from);
+				else {
+					addNetworkToIterated(from);
+				}
 			}
 		}
 
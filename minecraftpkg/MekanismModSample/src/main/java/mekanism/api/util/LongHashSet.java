@@ -0,0 +1,204 @@
+package mekanism.api.util;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash set of primitive longs, such as packed coordinates. Unlike a HashSet of boxed values
+ * it allocates nothing per element, which matters when walking networks of tens of thousands of blocks.
+ */
+public class LongHashSet
+{
+	private static final long EMPTY = Long.MIN_VALUE;
+
+	private long[] keys;
+	private boolean containsEmpty = false;
+	private int size = 0;
+
+	public LongHashSet()
+	{
+		this(16);
+	}
+
+	public LongHashSet(int expected)
+	{
+		keys = new long[tableSize(expected)];
+		Arrays.fill(keys, EMPTY);
+	}
+
+	/**
+	 * Adds a value to this set.
+	 * @param value - value to add
+	 * @return true if the value was not in the set yet
+	 */
+	public boolean add(long value)
+	{
+		if(value == EMPTY)
+		{
+			if(containsEmpty)
+			{
+				return false;
+			}
+
+			containsEmpty = true;
+			size++;
+			return true;
+		}
+
+		int slot = find(keys, value);
+
+		if(keys[slot] == value)
+		{
+			return false;
+		}
+
+		keys[slot] = value;
+		size++;
+
+		if(size * 2 > keys.length)
+		{
+			rehash(keys.length * 2);
+		}
+
+		return true;
+	}
+
+	public boolean contains(long value)
+	{
+		if(value == EMPTY)
+		{
+			return containsEmpty;
+		}
+
+		return keys[find(keys, value)] == value;
+	}
+
+	/**
+	 * Removes a value from this set.
+	 * @param value - value to remove
+	 * @return true if the value was in the set
+	 */
+	public boolean remove(long value)
+	{
+		if(value == EMPTY)
+		{
+			if(!containsEmpty)
+			{
+				return false;
+			}
+
+			containsEmpty = false;
+			size--;
+			return true;
+		}
+
+		int slot = find(keys, value);
+
+		if(keys[slot] != value)
+		{
+			return false;
+		}
+
+		keys[slot] = EMPTY;
+		size--;
+
+		//Re-insert the rest of the probe chain so later lookups don't stop at the hole
+		int mask = keys.length-1;
+
+		for(int i = (slot+1) & mask; keys[i] != EMPTY; i = (i+1) & mask)
+		{
+			long moved = keys[i];
+			keys[i] = EMPTY;
+			keys[find(keys, moved)] = moved;
+		}
+
+		return true;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	public void clear()
+	{
+		Arrays.fill(keys, EMPTY);
+		containsEmpty = false;
+		size = 0;
+	}
+
+	/**
+	 * Copies the values of this set into a new array, in no particular order.
+	 * @return the values of this set
+	 */
+	public long[] toArray()
+	{
+		long[] values = new long[size];
+		int i = 0;
+
+		if(containsEmpty)
+		{
+			values[i++] = EMPTY;
+		}
+
+		for(long key : keys)
+		{
+			if(key != EMPTY)
+			{
+				values[i++] = key;
+			}
+		}
+
+		return values;
+	}
+
+	private void rehash(int length)
+	{
+		long[] old = keys;
+		keys = new long[length];
+		Arrays.fill(keys, EMPTY);
+
+		for(long key : old)
+		{
+			if(key != EMPTY)
+			{
+				keys[find(keys, key)] = key;
+			}
+		}
+	}
+
+	private static int find(long[] table, long value)
+	{
+		int mask = table.length-1;
+		int i = hash(value) & mask;
+
+		while(table[i] != EMPTY && table[i] != value)
+		{
+			i = (i+1) & mask;
+		}
+
+		return i;
+	}
+
+	static int hash(long value)
+	{
+		long h = value * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32));
+	}
+
+	static int tableSize(int expected)
+	{
+		int length = 16;
+
+		while(length < expected * 2)
+		{
+			length <<= 1;
+		}
+
+		return length;
+	}
+}
@@ -0,0 +1,124 @@
+package mekanism.api.util;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map from primitive longs, such as packed coordinates, to ints. Meant for giving the blocks
+ * of a search consecutive indices into primitive arrays; entries can't be removed.
+ */
+public class LongIntHashMap
+{
+	private static final long EMPTY = Long.MIN_VALUE;
+
+	private long[] keys;
+	private int[] values;
+	private boolean containsEmpty = false;
+	private int emptyValue;
+	private int size = 0;
+
+	public LongIntHashMap()
+	{
+		this(16);
+	}
+
+	public LongIntHashMap(int expected)
+	{
+		keys = new long[LongHashSet.tableSize(expected)];
+		values = new int[keys.length];
+		Arrays.fill(keys, EMPTY);
+	}
+
+	/**
+	 * Gets the value mapped to a key.
+	 * @param key - key to look up
+	 * @param missing - value to return if the key isn't mapped
+	 * @return the mapped value, or missing
+	 */
+	public int get(long key, int missing)
+	{
+		if(key == EMPTY)
+		{
+			return containsEmpty ? emptyValue : missing;
+		}
+
+		int slot = find(keys, key);
+
+		return keys[slot] == key ? values[slot] : missing;
+	}
+
+	public void put(long key, int value)
+	{
+		if(key == EMPTY)
+		{
+			if(!containsEmpty)
+			{
+				containsEmpty = true;
+				size++;
+			}
+
+			emptyValue = value;
+			return;
+		}
+
+		int slot = find(keys, key);
+
+		if(keys[slot] == key)
+		{
+			values[slot] = value;
+			return;
+		}
+
+		keys[slot] = key;
+		values[slot] = value;
+		size++;
+
+		if(size * 2 > keys.length)
+		{
+			rehash(keys.length * 2);
+		}
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public void clear()
+	{
+		Arrays.fill(keys, EMPTY);
+		containsEmpty = false;
+		size = 0;
+	}
+
+	private void rehash(int length)
+	{
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new long[length];
+		values = new int[length];
+		Arrays.fill(keys, EMPTY);
+
+		for(int i = 0; i < oldKeys.length; i++)
+		{
+			if(oldKeys[i] != EMPTY)
+			{
+				int slot = find(keys, oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private static int find(long[] table, long key)
+	{
+		int mask = table.length-1;
+		int i = LongHashSet.hash(key) & mask;
+
+		while(table[i] != EMPTY && table[i] != key)
+		{
+			i = (i+1) & mask;
+		}
+
+		return i;
+	}
+}
@@ -5,6 +5,9 @@ import java.util.List;
 
 import mekanism.api.EnumColor;
 import mekanism.api.MekanismConfig.general;
+import mekanism.common.benchmark.NetworkBenchmark;
+import mekanism.common.benchmark.PathfinderBenchmark;
+import mekanism.common.content.transporter.PathfinderCache;
 import mekanism.common.frequency.Frequency;
 import mekanism.common.frequency.FrequencyManager;
 import mekanism.common.tile.TileEntityTeleporter;
@@ -68,6 +71,12 @@ public class CommandMekanism extends CommandBase
 					sender.addChatMessage(new ChatComponentText(EnumColor.INDIGO + " /mk news" + EnumColor.GREY + " -- displays most recent recent news."));
 					sender.addChatMessage(new ChatComponentText(EnumColor.INDIGO + " /mk debug" + EnumColor.GREY + " -- toggles Mekanism's debug mode."));
 					sender.addChatMessage(new ChatComponentText(EnumColor.INDIGO + " /mk teleporter" + EnumColor.GREY + " -- provides information on teleporters."));
+					sender.addChatMessage(new ChatComponentText(EnumColor.INDIGO + " /mk pathcache" + EnumColor.GREY + " -- displays logistical path cache statistics."));
+					sender.addChatMessage(new ChatComponentText(EnumColor.INDIGO + " /mk benchmark orphans [segments]" + EnumColor.GREY + " -- (debug mode) times network discovery of a synthetic cable."));
+					sender.addChatMessage(new ChatComponentText(EnumColor.INDIGO + " /mk benchmark split [segments]" + EnumColor.GREY + " -- (debug mode) times cutting a synthetic cable."));
+					sender.addChatMessage(new ChatComponentText(EnumColor.INDIGO + " /mk benchmark energy [acceptors]" + EnumColor.GREY + " -- (debug mode) times energy distribution to synthetic acceptors."));
+					sender.addChatMessage(new ChatComponentText(EnumColor.INDIGO + " /mk benchmark gas [acceptors]" + EnumColor.GREY + " -- (debug mode) times gas distribution to synthetic tanks."));
+					sender.addChatMessage(new ChatComponentText(EnumColor.INDIGO + " /mk benchmark pathfinder [size]" + EnumColor.GREY + " -- (debug mode) times transporter pathfinding through a synthetic maze."));
 					sender.addChatMessage(new ChatComponentText(EnumColor.GREY + "------------- " + EnumColor.DARK_BLUE + "[=======]" + EnumColor.GREY + " -------------"));
 				}
 				else if(params[1].equalsIgnoreCase("teleporter"))
@@ -192,6 +201,53 @@ public class CommandMekanism extends CommandBase
 					}
 				}
 			}
+			else if(params[0].equalsIgnoreCase("pathcache"))
+			{
+				sender.addChatMessage(new ChatComponentText(EnumColor.DARK_BLUE + "[Mekanism]" + EnumColor.GREY + " Path cache: " + PathfinderCache.getStats()));
+			}
+			else if(params[0].equalsIgnoreCase("benchmark"))
+			{
+				String result = null;
+
+				//Nothing ticks while a benchmark runs, so keep them out of normal play and within sizes that finish quickly
+				if(!Mekanism.debug)
+				{
+					sender.addChatMessage(new ChatComponentText(EnumColor.DARK_BLUE + "[Mekanism]" + EnumColor.GREY + " Benchmarks only run in debug mode, see '" + EnumColor.INDIGO + "/mk debug" + EnumColor.GREY + "'."));
+				}
+				else if(params.length == 1)
+				{
+					sender.addChatMessage(new ChatComponentText(EnumColor.DARK_BLUE + "[Mekanism]" + EnumColor.GREY + " Invalid parameters."));
+				}
+				else if(params[1].equalsIgnoreCase("orphans"))
+				{
+					result = NetworkBenchmark.runOrphanMerge(params.length > 2 ? parseIntBounded(sender, params[2], 1, NetworkBenchmark.MAX_SEGMENTS) : 100000);
+				}
+				else if(params[1].equalsIgnoreCase("split"))
+				{
+					result = NetworkBenchmark.runSplit(params.length > 2 ? parseIntBounded(sender, params[2], 2, NetworkBenchmark.MAX_SEGMENTS) : 20000);
+				}
+				else if(params[1].equalsIgnoreCase("energy"))
+				{
+					result = NetworkBenchmark.runEnergyDistribution(params.length > 2 ? parseIntBounded(sender, params[2], 1, NetworkBenchmark.MAX_ACCEPTORS) : 1000);
+				}
+				else if(params[1].equalsIgnoreCase("gas"))
+				{
+					result = NetworkBenchmark.runGasDistribution(params.length > 2 ? parseIntBounded(sender, params[2], 1, NetworkBenchmark.MAX_ACCEPTORS) : 1000);
+				}
+				else if(params[1].equalsIgnoreCase("pathfinder"))
+				{
+					result = PathfinderBenchmark.runMaze(params.length > 2 ? parseIntBounded(sender, params[2], 2, PathfinderBenchmark.MAX_SIZE) : 64);
+				}
+				else {
+					sender.addChatMessage(new ChatComponentText(EnumColor.DARK_BLUE + "[Mekanism]" + EnumColor.GREY + " Unknown benchmark."));
+				}
+
+				if(result != null)
+				{
+					Mekanism.logger.info(result);
+					sender.addChatMessage(new ChatComponentText(EnumColor.DARK_BLUE + "[Mekanism]" + EnumColor.GREY + " " + result));
+				}
+			}
 			else if(params[0].equalsIgnoreCase("debug"))
 			{
 				Mekanism.debug = !Mekanism.debug;
@@ -308,6 +308,7 @@ public class CommonProxy
 		general.destroyDisabledBlocks = Mekanism.configuration.get("general", "DestroyDisabledBlocks", true).getBoolean();
 		general.enableAmbientLighting = Mekanism.configuration.get("general", "EnableAmbientLighting", true).getBoolean();
 		general.ambientLightingLevel = Mekanism.configuration.get("general", "AmbientLightingLevel", 15).getInt();
+		general.parallelNetworkTicking = Mekanism.configuration.get("general", "ParallelNetworkTicking", false, "Plan the transfers of networks that share no acceptors on multiple threads. Transfers themselves stay on the server thread.").getBoolean();
 		
 		for(MachineType type : MachineType.getValidMachines())
 		{
@@ -1,17 +1,16 @@
 package mekanism.common;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import mekanism.api.Coord4D;
 import mekanism.common.base.EnergyAcceptorWrapper;
 import mekanism.api.energy.EnergyStack;
 import mekanism.api.transmitters.DynamicNetwork;
+import mekanism.api.transmitters.DynamicNetwork.AcceptorCacheEntry;
 import mekanism.api.transmitters.IGridTransmitter;
 import mekanism.common.util.MekanismUtils;
 import net.minecraft.tileentity.TileEntity;
@@ -30,6 +29,10 @@ public class EnergyNetwork extends DynamicNetwork<EnergyAcceptorWrapper, EnergyN
 
 	public EnergyStack buffer = new EnergyStack(0);
 
+	private EnergyDemand[] demands = new EnergyDemand[0];
+	private int demandCount = 0;
+	private boolean demandsPlanned = false;
+
 	public EnergyNetwork() {}
 
 	public EnergyNetwork(Collection<EnergyNetwork> networks)
@@ -113,18 +116,7 @@ public class EnergyNetwork extends DynamicNetwork<EnergyAcceptorWrapper, EnergyN
 			return 0;
 		}
 
-		double sent = 0;
-		boolean tryAgain;
-		int i = 0;
-
-		do {
-			double prev = sent;
-			sent += doEmit(energyToSend-sent);
-
-			tryAgain = energyToSend-sent > 0 && sent-prev > 0 && i < 100;
-
-			i++;
-		} while(tryAgain);
+		double sent = doEmit(energyToSend);
 
 		joulesTransmitted = sent;
 		return sent;
@@ -145,39 +137,80 @@ public class EnergyNetwork extends DynamicNetwork<EnergyAcceptorWrapper, EnergyN
 	 */
 	public double doEmit(double energyToSend)
 	{
-		double sent = 0;
+		if(demandsPlanned)
+		{
+			demandsPlanned = false;
+
+			return transfer(demands, demandCount, energyToSend);
+		}
+
+		collectDemands();
 
-		List<EnergyAcceptorWrapper> availableAcceptors = new ArrayList<>();
-		availableAcceptors.addAll(getAcceptors(null));
+		return distribute(demands, demandCount, energyToSend);
+	}
 
-		Collections.shuffle(availableAcceptors);
+	@Override
+	public void prepareTick()
+	{
+		demandsPlanned = false;
 
-		if(!availableAcceptors.isEmpty())
+		if(buffer.amount > 0)
 		{
-			int divider = availableAcceptors.size();
-			double remaining = energyToSend % divider;
-			double sending = (energyToSend-remaining)/divider;
+			collectDemands();
+			demandsPlanned = true;
+		}
+	}
 
-			for(EnergyAcceptorWrapper acceptor : availableAcceptors)
-			{
-				double currentSending = sending+remaining;
-				EnumSet<ForgeDirection> sides = acceptorDirections.get(acceptor.coord);
+	@Override
+	public void planTick()
+	{
+		if(demandsPlanned)
+		{
+			Arrays.sort(demands, 0, demandCount);
+		}
+	}
 
-				if(sides == null || sides.isEmpty())
-				{
-					continue;
-				}
+	/**
+	 * Hands out energy to acceptors in order of increasing demand. Each acceptor is offered an equal share of what is
+	 * left, capped at its demand, so energy a small acceptor can't take flows on to the larger ones in the same pass.
+	 * @param demands - acceptors to send to; the first count entries are sorted in place
+	 * @param count - number of acceptors to send to
+	 * @param energyToSend - energy to hand out
+	 * @return sent
+	 */
+	public static double distribute(EnergyDemand[] demands, int count, double energyToSend)
+	{
+		Arrays.sort(demands, 0, count);
 
-				for(ForgeDirection side : sides)
-				{
-					double prev = sent;
+		return transfer(demands, count, energyToSend);
+	}
 
-					sent += acceptor.transferEnergyToAcceptor(side, currentSending);
+	/**
+	 * Sends energy to acceptors already sorted by increasing demand, as distribute() does after sorting them.
+	 * @param demands - acceptors to send to, sorted
+	 * @param count - number of acceptors to send to
+	 * @param energyToSend - energy to hand out
+	 * @return sent
+	 */
+	private static double transfer(EnergyDemand[] demands, int count, double energyToSend)
+	{
+		double sent = 0;
 
-					if(sent > prev)
-					{
-						break;
-					}
+		for(int i = 0; i < count && energyToSend-sent > 0; i++)
+		{
+			EnergyDemand demand = demands[i];
+			double toSend = Math.min((energyToSend-sent)/(count-i), demand.needed);
+
+			for(ForgeDirection side : demand.sides)
+			{
+				double accepted = demand.acceptor.transferEnergyToAcceptor(side, toSend);
+
+				sent += accepted;
+				toSend -= accepted;
+
+				if(toSend <= 0)
+				{
+					break;
 				}
 			}
 		}
@@ -185,44 +218,95 @@ public class EnergyNetwork extends DynamicNetwork<EnergyAcceptorWrapper, EnergyN
 		return sent;
 	}
 
-	@Override
-	public Set<EnergyAcceptorWrapper> getAcceptors(Object data)
+	/**
+	 * Fills demands with the cached acceptors that currently take energy on one of their connected sides.
+	 */
+	private void collectDemands()
 	{
-		Set<EnergyAcceptorWrapper> toReturn = new HashSet<>();
+		demandCount = 0;
+		demandsPlanned = false;
 
 		if(FMLCommonHandler.instance().getEffectiveSide().isClient())
 		{
-			return toReturn;
+			return;
 		}
 
-		for(Coord4D coord : possibleAcceptors.keySet())
+		List<AcceptorCacheEntry<EnergyAcceptorWrapper>> acceptors = getAcceptorCache();
+
+		if(demands.length < acceptors.size())
 		{
-			EnumSet<ForgeDirection> sides = acceptorDirections.get(coord);
+			EnergyDemand[] grown = Arrays.copyOf(demands, acceptors.size());
 
-			if(sides == null || sides.isEmpty())
+			for(int i = demands.length; i < grown.length; i++)
+			{
+				grown[i] = new EnergyDemand();
+			}
+
+			demands = grown;
+		}
+
+		for(AcceptorCacheEntry<EnergyAcceptorWrapper> entry : acceptors)
+		{
+			if(!validateAcceptor(entry))
 			{
 				continue;
 			}
 
-			TileEntity tile = coord.getTileEntity(getWorld());
-			EnergyAcceptorWrapper acceptor = EnergyAcceptorWrapper.get(tile);
+			double needed = entry.acceptor.getNeeded();
 
-			if(acceptor != null)
+			if(needed > 0)
 			{
-				for(ForgeDirection side : sides)
+				for(ForgeDirection side : entry.sides)
 				{
-					if(acceptor.canReceiveEnergy(side) && acceptor.getNeeded() > 0)
+					if(entry.acceptor.canReceiveEnergy(side))
 					{
-						toReturn.add(acceptor);
+						EnergyDemand demand = demands[demandCount++];
+						demand.acceptor = entry.acceptor;
+						demand.sides = entry.sides;
+						demand.needed = needed;
 						break;
 					}
 				}
 			}
 		}
+	}
+
+	@Override
+	public Set<EnergyAcceptorWrapper> getAcceptors(Object data)
+	{
+		Set<EnergyAcceptorWrapper> toReturn = new HashSet<>();
+
+		collectDemands();
+
+		for(int i = 0; i < demandCount; i++)
+		{
+			toReturn.add(demands[i].acceptor);
+		}
 
 		return toReturn;
 	}
 
+	@Override
+	protected EnergyAcceptorWrapper getAcceptorFromTile(TileEntity tile)
+	{
+		return EnergyAcceptorWrapper.get(tile);
+	}
+
+	public static class EnergyDemand implements Comparable<EnergyDemand>
+	{
+		public EnergyAcceptorWrapper acceptor;
+
+		public EnumSet<ForgeDirection> sides;
+
+		public double needed;
+
+		@Override
+		public int compareTo(EnergyDemand other)
+		{
+			return Double.compare(needed, other.needed);
+		}
+	}
+
 	public static class EnergyTransferEvent extends Event
 	{
 		public final EnergyNetwork energyNetwork;
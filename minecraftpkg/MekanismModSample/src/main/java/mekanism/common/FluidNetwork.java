@@ -4,14 +4,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
 
-import mekanism.api.Coord4D;
 import mekanism.api.transmitters.DynamicNetwork;
+import mekanism.api.transmitters.DynamicNetwork.AcceptorCacheEntry;
 import mekanism.api.transmitters.IGridTransmitter;
 import mekanism.common.util.LangUtils;
 import net.minecraft.tileentity.TileEntity;
@@ -39,6 +38,13 @@ public class FluidNetwork extends DynamicNetwork<IFluidHandler, FluidNetwork>
 
 	public int prevTransferAmount = 0;
 
+	private List<AcceptorCacheEntry<IFluidHandler>> availableAcceptors = new ArrayList<>();
+
+	private FluidDemand[] demands = new FluidDemand[0];
+	private int demandCount = 0;
+	private FluidStack transferStack;
+	private Fluid plannedFluid;
+
 	public FluidNetwork() {}
 
 	public FluidNetwork(Collection<FluidNetwork> networks)
@@ -131,23 +137,166 @@ public class FluidNetwork extends DynamicNetwork<IFluidHandler, FluidNetwork>
 
 	public int tickEmit(FluidStack fluidToSend, boolean doTransfer)
 	{
-		List<IFluidHandler> availableAcceptors = new ArrayList<>();
-		availableAcceptors.addAll(getAcceptors(fluidToSend));
+		int fluidSent;
+
+		if(doTransfer && plannedFluid != null && plannedFluid == fluidToSend.getFluid())
+		{
+			fluidSent = transfer(fluidToSend, true);
+		}
+		else {
+			List<AcceptorCacheEntry<IFluidHandler>> availableAcceptors = getAvailableAcceptors(fluidToSend);
+
+			fluidSent = honourSimulation(availableAcceptors) ? emitBatched(availableAcceptors, fluidToSend, doTransfer) : emitEqually(availableAcceptors, fluidToSend, doTransfer);
+		}
 
-		Collections.shuffle(availableAcceptors);
+		plannedFluid = null;
+
+		if(doTransfer && fluidSent > 0 && FMLCommonHandler.instance().getEffectiveSide().isServer())
+		{
+			didTransfer = true;
+			transferDelay = 2;
+		}
+
+		return fluidSent;
+	}
+
+	/**
+	 * Asks each acceptor once how much of the fluid it takes, then fills them in order of increasing demand. Each
+	 * acceptor is given an equal share of what is left, capped at its demand, so no fluid is offered where it would be
+	 * refused. Acceptors must honour simulated fills, and must copy the stack they are given rather than keep it.
+	 * @param acceptors - acceptors that can be filled with the fluid
+	 * @param fluidToSend - fluid to send
+	 * @param doTransfer - whether to actually fill the acceptors
+	 * @return sent
+	 */
+	public int emitBatched(List<AcceptorCacheEntry<IFluidHandler>> acceptors, FluidStack fluidToSend, boolean doTransfer)
+	{
+		collectDemands(acceptors, fluidToSend);
+		Arrays.sort(demands, 0, demandCount);
+
+		return transfer(fluidToSend, doTransfer);
+	}
+
+	@Override
+	public void prepareTick()
+	{
+		plannedFluid = null;
+
+		if(buffer != null && FMLCommonHandler.instance().getEffectiveSide().isServer())
+		{
+			List<AcceptorCacheEntry<IFluidHandler>> availableAcceptors = getAvailableAcceptors(buffer);
+
+			//Acceptors that may not honour simulation get the equal split, which has nothing to plan
+			if(honourSimulation(availableAcceptors))
+			{
+				collectDemands(availableAcceptors, buffer);
+				plannedFluid = buffer.getFluid();
+			}
+		}
+	}
+
+	@Override
+	public void planTick()
+	{
+		if(plannedFluid != null)
+		{
+			Arrays.sort(demands, 0, demandCount);
+		}
+	}
+
+	/**
+	 * Asks each acceptor how much of the fluid it takes, with a simulated fill.
+	 * @param acceptors - acceptors that can be filled with the fluid
+	 * @param fluidToSend - fluid to send
+	 */
+	private void collectDemands(List<AcceptorCacheEntry<IFluidHandler>> acceptors, FluidStack fluidToSend)
+	{
+		if(demands.length < acceptors.size())
+		{
+			FluidDemand[] grown = Arrays.copyOf(demands, acceptors.size());
+
+			for(int i = demands.length; i < grown.length; i++)
+			{
+				grown[i] = new FluidDemand();
+			}
+
+			demands = grown;
+		}
+
+		if(transferStack == null || transferStack.fluidID != fluidToSend.fluidID)
+		{
+			transferStack = new FluidStack(fluidToSend.fluidID, 0);
+		}
+
+		transferStack.amount = fluidToSend.amount;
+		demandCount = 0;
+
+		for(AcceptorCacheEntry<IFluidHandler> entry : acceptors)
+		{
+			for(ForgeDirection side : entry.sides)
+			{
+				int needed = entry.acceptor.fill(side, transferStack, false);
+
+				if(needed > 0)
+				{
+					FluidDemand demand = demands[demandCount++];
+					demand.acceptor = entry.acceptor;
+					demand.side = side;
+					demand.needed = needed;
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Fills the collected acceptors, sorted by increasing demand, with the fluid.
+	 * @param fluidToSend - fluid to send, of the type the demands were collected for
+	 * @param doTransfer - whether to actually fill the acceptors
+	 * @return sent
+	 */
+	private int transfer(FluidStack fluidToSend, boolean doTransfer)
+	{
+		int toSend = fluidToSend.amount;
+
+		for(int i = 0; i < demandCount && toSend > 0; i++)
+		{
+			FluidDemand demand = demands[i];
+			int allotment = Math.min(toSend/(demandCount-i), demand.needed);
+
+			if(allotment > 0)
+			{
+				transferStack.amount = allotment;
+				toSend -= doTransfer ? demand.acceptor.fill(demand.side, transferStack, true) : allotment;
+			}
+		}
+
+		return fluidToSend.amount-toSend;
+	}
+
+	/**
+	 * Splits the fluid equally between the acceptors in random order, as networks did before batched transfer. Used
+	 * when an acceptor might not honour simulated fills; each one gets a stack of its own.
+	 * @param acceptors - acceptors that can be filled with the fluid
+	 * @param fluidToSend - fluid to send
+	 * @param doTransfer - whether to actually fill the acceptors
+	 * @return sent
+	 */
+	public int emitEqually(List<AcceptorCacheEntry<IFluidHandler>> acceptors, FluidStack fluidToSend, boolean doTransfer)
+	{
+		Collections.shuffle(acceptors);
 
 		int fluidSent = 0;
 
-		if(!availableAcceptors.isEmpty())
+		if(!acceptors.isEmpty())
 		{
-			int divider = availableAcceptors.size();
+			int divider = acceptors.size();
 			int remaining = fluidToSend.amount % divider;
 			int sending = (fluidToSend.amount-remaining)/divider;
 
-			for(IFluidHandler acceptor : availableAcceptors)
+			for(AcceptorCacheEntry<IFluidHandler> entry : acceptors)
 			{
 				int currentSending = sending;
-				EnumSet<ForgeDirection> sides = acceptorDirections.get(Coord4D.get((TileEntity)acceptor));
 
 				if(remaining > 0)
 				{
@@ -155,14 +304,11 @@ public class FluidNetwork extends DynamicNetwork<IFluidHandler, FluidNetwork>
 					remaining--;
 				}
 
-				for(ForgeDirection side : sides)
+				for(ForgeDirection side : entry.sides)
 				{
 					int prev = fluidSent;
 
-					if(acceptor != null && fluidToSend != null)
-					{
-						fluidSent += acceptor.fill(side, new FluidStack(fluidToSend.fluidID, currentSending), doTransfer);
-					}
+					fluidSent += entry.acceptor.fill(side, new FluidStack(fluidToSend.fluidID, currentSending), doTransfer);
 
 					if(fluidSent > prev)
 					{
@@ -172,12 +318,6 @@ public class FluidNetwork extends DynamicNetwork<IFluidHandler, FluidNetwork>
 			}
 		}
 
-		if(doTransfer && fluidSent > 0 && FMLCommonHandler.instance().getEffectiveSide().isServer())
-		{
-			didTransfer = true;
-			transferDelay = 2;
-		}
-
 		return fluidSent;
 	}
 
@@ -277,41 +417,73 @@ public class FluidNetwork extends DynamicNetwork<IFluidHandler, FluidNetwork>
 		}
 	}
 
-	@Override
-	public Set<IFluidHandler> getAcceptors(Object data)
+	/**
+	 * Gets the cached acceptors that can currently take the given fluid on one of their connected sides. The returned
+	 * list is reused by the next call.
+	 * @param fluidToSend - fluid to send
+	 * @return acceptors that can be filled with the fluid
+	 */
+	public List<AcceptorCacheEntry<IFluidHandler>> getAvailableAcceptors(FluidStack fluidToSend)
 	{
-		FluidStack fluidToSend = (FluidStack)data;
-		Set<IFluidHandler> toReturn = new HashSet<>();
-		
+		availableAcceptors.clear();
+
 		if(FMLCommonHandler.instance().getEffectiveSide().isClient())
 		{
-			return toReturn;
+			return availableAcceptors;
 		}
 
-		for(Coord4D coord : possibleAcceptors.keySet())
+		for(AcceptorCacheEntry<IFluidHandler> entry : getAcceptorCache())
 		{
-			EnumSet<ForgeDirection> sides = acceptorDirections.get(coord);
-
-			if(sides == null || sides.isEmpty())
-			{
-				continue;
-			}
-
-			IFluidHandler acceptor = (IFluidHandler)coord.getTileEntity(getWorld());
-
-			for(ForgeDirection side : sides)
+			if(validateAcceptor(entry))
 			{
-				if(acceptor != null && acceptor.canFill(side, fluidToSend.getFluid()))
+				for(ForgeDirection side : entry.sides)
 				{
-					toReturn.add(acceptor);
-					break;
+					if(entry.acceptor.canFill(side, fluidToSend.getFluid()))
+					{
+						availableAcceptors.add(entry);
+						break;
+					}
 				}
 			}
 		}
 
+		return availableAcceptors;
+	}
+
+	@Override
+	public Set<IFluidHandler> getAcceptors(Object data)
+	{
+		Set<IFluidHandler> toReturn = new HashSet<>();
+
+		for(AcceptorCacheEntry<IFluidHandler> entry : getAvailableAcceptors((FluidStack)data))
+		{
+			toReturn.add(entry.acceptor);
+		}
+
 		return toReturn;
 	}
 
+	@Override
+	protected IFluidHandler getAcceptorFromTile(TileEntity tile)
+	{
+		return tile instanceof IFluidHandler ? (IFluidHandler)tile : null;
+	}
+
+	public static class FluidDemand implements Comparable<FluidDemand>
+	{
+		public IFluidHandler acceptor;
+
+		public ForgeDirection side;
+
+		public int needed;
+
+		@Override
+		public int compareTo(FluidDemand other)
+		{
+			return Integer.compare(needed, other.needed);
+		}
+	}
+
 	public static class FluidTransferEvent extends Event
 	{
 		public final FluidNetwork fluidNetwork;
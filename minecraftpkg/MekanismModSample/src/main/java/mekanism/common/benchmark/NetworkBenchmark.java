@@ -0,0 +1,694 @@
+package mekanism.common.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import mekanism.api.Coord4D;
+import mekanism.api.gas.Gas;
+import mekanism.api.gas.GasNetwork;
+import mekanism.api.gas.GasStack;
+import mekanism.api.gas.IGasHandler;
+import mekanism.api.transmitters.DynamicNetwork;
+import mekanism.api.transmitters.DynamicNetwork.AcceptorCacheEntry;
+import mekanism.api.transmitters.IGridTransmitter;
+import mekanism.api.transmitters.TransmissionType;
+import mekanism.api.transmitters.TransmitterNetworkRegistry;
+import mekanism.api.transmitters.TransmitterNetworkRegistry.NetworkSplitter;
+import mekanism.common.EnergyNetwork;
+import mekanism.common.EnergyNetwork.EnergyDemand;
+import mekanism.common.base.EnergyAcceptorWrapper;
+import net.minecraft.world.World;
+import net.minecraftforge.common.util.ForgeDirection;
+
+/**
+ * Benchmarks of transmitter network maintenance, run with '/mk benchmark' in debug mode. Networks are built from
+ * in-memory transmitters that are never placed in a world, so the benchmarks have no side effects, but they do hold up
+ * the server thread while they run.
+ */
+public class NetworkBenchmark
+{
+	public static final int ROW_LENGTH = 256;
+
+	public static final int RUNS = 5;
+
+	public static final int TICKS = 200;
+
+	/** Largest cable the command builds; a run at this size takes about half a second. */
+	public static final int MAX_SEGMENTS = 100000;
+
+	/** Most acceptors the command builds; a run at this size takes up to two seconds. */
+	public static final int MAX_ACCEPTORS = 10000;
+
+	/**
+	 * Times how long it takes the registry to discover a cable run of the given length from one of its orphan segments.
+	 * The cable snakes back and forth in rows, which makes it one long path, the deepest case for network discovery.
+	 * @param segments - number of cable segments
+	 * @return a line describing the result
+	 */
+	public static String runOrphanMerge(int segments)
+	{
+		long best = Long.MAX_VALUE;
+		long total = 0;
+		int found = 0;
+
+		for(int run = 0; run < RUNS; run++)
+		{
+			TransmitterNetworkRegistry registry = new TransmitterNetworkRegistry();
+			HashMap<Coord4D, BenchTransmitter> cables = createCable(segments);
+
+			for(BenchTransmitter cable : cables.values())
+			{
+				registry.addOrphanTransmitter(cable);
+			}
+
+			BenchTransmitter start = cables.get(getCableCoord(0));
+
+			long startTime = System.nanoTime();
+			BenchNetwork network = (BenchNetwork)registry.getNetworkFromOrphan(start);
+			long elapsed = System.nanoTime()-startTime;
+
+			found = network.transmittersToAdd.size();
+			best = Math.min(best, elapsed);
+			total += elapsed;
+		}
+
+		return "Orphan merge of " + segments + " segments (" + found + " found): best " + formatMillis(best) + ", mean " + formatMillis(total/RUNS);
+	}
+
+	/**
+	 * Times cutting a cable of the given length close to one end, once by splitting the network locally and once by
+	 * rediscovering both halves from scratch, which is what invalidating the whole network amounts to.
+	 * @param segments - number of cable segments
+	 * @return a line describing the result
+	 */
+	public static String runSplit(int segments)
+	{
+		int cut = segments - segments/100 - 1;
+		long best = Long.MAX_VALUE;
+		long rediscoverBest = Long.MAX_VALUE;
+		int splitOff = 0;
+
+		for(int run = 0; run < RUNS; run++)
+		{
+			HashMap<Coord4D, BenchTransmitter> cables = createCable(segments);
+			BenchNetwork network = new BenchNetwork();
+
+			for(BenchTransmitter cable : cables.values())
+			{
+				cable.setTransmitterNetwork(network);
+				network.transmitters.add(cable);
+			}
+
+			Coord4D cutCoord = getCableCoord(cut);
+			BenchTransmitter removed = cables.remove(cutCoord);
+			removed.valid = false;
+
+			HashMap<IGridTransmitter<Object, BenchNetwork>, Coord4D> changed = new HashMap<>();
+			changed.put(removed, cutCoord);
+
+			NetworkSplitter<Object, BenchNetwork> splitter = new BenchSplitter(network, changed, cables);
+
+			long startTime = System.nanoTime();
+			splitter.split();
+			best = Math.min(best, System.nanoTime()-startTime);
+
+			splitOff = 0;
+
+			for(Map<Coord4D, IGridTransmitter<Object, BenchNetwork>> piece : splitter.pieces)
+			{
+				splitOff += piece.size();
+			}
+
+			TransmitterNetworkRegistry registry = new TransmitterNetworkRegistry();
+
+			for(BenchTransmitter cable : cables.values())
+			{
+				cable.setTransmitterNetwork(null);
+				registry.addOrphanTransmitter(cable);
+			}
+
+			startTime = System.nanoTime();
+			registry.getNetworkFromOrphan(cables.get(getCableCoord(0)));
+			registry.getNetworkFromOrphan(cables.get(getCableCoord(segments-1)));
+			rediscoverBest = Math.min(rediscoverBest, System.nanoTime()-startTime);
+		}
+
+		return "Split of " + segments + " segments (" + splitOff + " split off): best " + formatMillis(best) + ", full rediscovery best " + formatMillis(rediscoverBest);
+	}
+
+	/**
+	 * Times handing out energy to acceptors of mixed size, nine in ten small and one in ten large, that empty
+	 * themselves every tick. Each tick offers half of the total demand, once distributed by EnergyNetwork and once by
+	 * splitting it equally between shuffled acceptors, repeated while anything is accepted, as networks used to.
+	 * @param acceptors - number of acceptors
+	 * @return a line describing the result
+	 */
+	public static String runEnergyDistribution(int acceptors)
+	{
+		Random random = new Random(acceptors);
+		EnergyDemand[] demands = new EnergyDemand[acceptors];
+		double totalNeeded = 0;
+
+		for(int i = 0; i < acceptors; i++)
+		{
+			demands[i] = new EnergyDemand();
+			demands[i].acceptor = new BenchAcceptor(i % 10 == 0 ? 100000 + random.nextInt(900000) : 100 + random.nextInt(900));
+			demands[i].sides = EnumSet.of(ForgeDirection.DOWN);
+			totalNeeded += demands[i].acceptor.getMaxEnergy();
+		}
+
+		double offered = totalNeeded/2;
+		long best = Long.MAX_VALUE;
+		long equalBest = Long.MAX_VALUE;
+		double delivered = 0;
+		double equalDelivered = 0;
+		double equalFirstPass = 0;
+		int equalPasses = 0;
+
+		for(int run = 0; run < RUNS; run++)
+		{
+			long elapsed = 0;
+			delivered = 0;
+
+			for(int tick = 0; tick < TICKS; tick++)
+			{
+				for(EnergyDemand demand : demands)
+				{
+					demand.acceptor.setEnergy(0);
+					demand.needed = demand.acceptor.getNeeded();
+				}
+
+				long startTime = System.nanoTime();
+				delivered += EnergyNetwork.distribute(demands, acceptors, offered);
+				elapsed += System.nanoTime()-startTime;
+			}
+
+			best = Math.min(best, elapsed/TICKS);
+
+			elapsed = 0;
+			equalDelivered = 0;
+			equalFirstPass = 0;
+			equalPasses = 0;
+
+			List<EnergyAcceptorWrapper> available = new ArrayList<>();
+
+			for(int tick = 0; tick < TICKS; tick++)
+			{
+				for(EnergyDemand demand : demands)
+				{
+					demand.acceptor.setEnergy(0);
+				}
+
+				long startTime = System.nanoTime();
+				double sent = 0;
+				double prev;
+				int pass = 0;
+
+				do {
+					prev = sent;
+					available.clear();
+
+					for(EnergyDemand demand : demands)
+					{
+						if(demand.acceptor.getNeeded() > 0)
+						{
+							available.add(demand.acceptor);
+						}
+					}
+
+					Collections.shuffle(available, random);
+
+					for(EnergyAcceptorWrapper acceptor : available)
+					{
+						sent += acceptor.transferEnergyToAcceptor(ForgeDirection.DOWN, (offered-prev)/available.size());
+					}
+
+					if(pass == 0)
+					{
+						equalFirstPass += sent;
+					}
+
+					pass++;
+				} while(offered-sent > 0 && sent > prev && pass < 100);
+
+				elapsed += System.nanoTime()-startTime;
+				equalDelivered += sent;
+				equalPasses += pass;
+			}
+
+			equalBest = Math.min(equalBest, elapsed/TICKS);
+		}
+
+		return "Energy to " + acceptors + " acceptors: " + formatMillis(best) + "/tick, " + formatPercent(delivered/(offered*TICKS)) + " delivered; equal split: " +
+				formatPercent(equalFirstPass/(offered*TICKS)) + " in one pass, " + formatMillis(equalBest) + "/tick and " + formatPercent(equalDelivered/(offered*TICKS)) +
+				" over " + String.format("%.1f", equalPasses/(double)TICKS) + " passes";
+	}
+
+	/**
+	 * Times a gas network handing out gas to tanks of mixed size, nine in ten small and one in ten large, that empty
+	 * themselves every tick. Each tick offers half of the total capacity, once with batched transfer and once by
+	 * splitting it equally between shuffled tanks.
+	 * @param acceptors - number of tanks
+	 * @return a line describing the result
+	 */
+	public static String runGasDistribution(int acceptors)
+	{
+		Random random = new Random(acceptors);
+		List<AcceptorCacheEntry<IGasHandler>> entries = new ArrayList<>();
+		int totalCapacity = 0;
+
+		for(int i = 0; i < acceptors; i++)
+		{
+			AcceptorCacheEntry<IGasHandler> entry = new AcceptorCacheEntry<>();
+			BenchGasTank tank = new BenchGasTank(i % 10 == 0 ? 1000 + random.nextInt(9000) : 10 + random.nextInt(90));
+			entry.acceptor = tank;
+			entry.sides = EnumSet.of(ForgeDirection.DOWN);
+			entries.add(entry);
+			totalCapacity += tank.capacity;
+		}
+
+		GasNetwork network = new GasNetwork();
+		Gas gas = new Gas("benchmark");
+		int offered = totalCapacity/2;
+		long best = Long.MAX_VALUE;
+		long equalBest = Long.MAX_VALUE;
+		long delivered = 0;
+		long equalDelivered = 0;
+
+		for(int run = 0; run < RUNS; run++)
+		{
+			for(int equal = 0; equal < 2; equal++)
+			{
+				long elapsed = 0;
+				long sent = 0;
+
+				for(int tick = 0; tick < TICKS; tick++)
+				{
+					for(AcceptorCacheEntry<IGasHandler> entry : entries)
+					{
+						((BenchGasTank)entry.acceptor).stored = 0;
+					}
+
+					GasStack stack = new GasStack(gas, offered);
+
+					long startTime = System.nanoTime();
+					sent += equal == 1 ? network.emitEqually(entries, stack) : network.emitBatched(entries, stack);
+					elapsed += System.nanoTime()-startTime;
+				}
+
+				if(equal == 1)
+				{
+					equalBest = Math.min(equalBest, elapsed/TICKS);
+					equalDelivered = sent;
+				}
+				else {
+					best = Math.min(best, elapsed/TICKS);
+					delivered = sent;
+				}
+			}
+		}
+
+		return "Gas to " + acceptors + " tanks: batched " + formatMillis(best) + "/tick, " + formatPercent(delivered/((double)offered*TICKS)) + " delivered; equal split " +
+				formatMillis(equalBest) + "/tick, " + formatPercent(equalDelivered/((double)offered*TICKS)) + " delivered";
+	}
+
+	/**
+	 * Lays out a cable of the given length in rows of ROW_LENGTH blocks, each row joined to the next by one segment.
+	 * @param segments - number of cable segments
+	 * @return the cable segments by location
+	 */
+	public static HashMap<Coord4D, BenchTransmitter> createCable(int segments)
+	{
+		HashMap<Coord4D, BenchTransmitter> cables = new HashMap<>();
+
+		for(int i = 0; i < segments; i++)
+		{
+			Coord4D coord = getCableCoord(i);
+			cables.put(coord, new BenchTransmitter(coord, cables));
+		}
+
+		return cables;
+	}
+
+	/**
+	 * Gets the location of the index'th segment of a cable laid out by createCable().
+	 * @param index - index of the segment along the cable
+	 * @return the segment's location
+	 */
+	public static Coord4D getCableCoord(int index)
+	{
+		int lap = index / (ROW_LENGTH+1);
+		int step = index % (ROW_LENGTH+1);
+		boolean forward = lap % 2 == 0;
+
+		if(step < ROW_LENGTH)
+		{
+			return new Coord4D(forward ? step : ROW_LENGTH-1-step, 64, 2*lap, 0);
+		}
+
+		return new Coord4D(forward ? ROW_LENGTH-1 : 0, 64, 2*lap+1, 0);
+	}
+
+	public static String formatMillis(long nanos)
+	{
+		return String.format("%.3f ms", nanos / 1000000D);
+	}
+
+	public static String formatPercent(double fraction)
+	{
+		return String.format("%.1f%%", fraction * 100);
+	}
+
+	public static class BenchAcceptor extends EnergyAcceptorWrapper
+	{
+		public double energy;
+
+		public double maxEnergy;
+
+		public BenchAcceptor(double max)
+		{
+			maxEnergy = max;
+		}
+
+		@Override
+		public double transferEnergyToAcceptor(ForgeDirection side, double amount)
+		{
+			double accepted = Math.min(amount, getNeeded());
+			energy += accepted;
+
+			return accepted;
+		}
+
+		@Override
+		public boolean canReceiveEnergy(ForgeDirection side)
+		{
+			return true;
+		}
+
+		@Override
+		public double getEnergy()
+		{
+			return energy;
+		}
+
+		@Override
+		public void setEnergy(double newEnergy)
+		{
+			energy = newEnergy;
+		}
+
+		@Override
+		public double getMaxEnergy()
+		{
+			return maxEnergy;
+		}
+
+		@Override
+		public double getNeeded()
+		{
+			return maxEnergy-energy;
+		}
+	}
+
+	public static class BenchGasTank implements IGasHandler
+	{
+		public int stored;
+
+		public int capacity;
+
+		public BenchGasTank(int max)
+		{
+			capacity = max;
+		}
+
+		@Override
+		public int receiveGas(ForgeDirection side, GasStack stack, boolean doTransfer)
+		{
+			int accepted = Math.min(stack.amount, capacity-stored);
+
+			if(doTransfer)
+			{
+				stored += accepted;
+			}
+
+			return accepted;
+		}
+
+		@Override
+		public int receiveGas(ForgeDirection side, GasStack stack)
+		{
+			return receiveGas(side, stack, true);
+		}
+
+		@Override
+		public GasStack drawGas(ForgeDirection side, int amount, boolean doTransfer)
+		{
+			return null;
+		}
+
+		@Override
+		public GasStack drawGas(ForgeDirection side, int amount)
+		{
+			return null;
+		}
+
+		@Override
+		public boolean canReceiveGas(ForgeDirection side, Gas type)
+		{
+			return true;
+		}
+
+		@Override
+		public boolean canDrawGas(ForgeDirection side, Gas type)
+		{
+			return false;
+		}
+	}
+
+	public static class BenchTransmitter implements IGridTransmitter<Object, BenchNetwork>
+	{
+		public Coord4D location;
+
+		public HashMap<Coord4D, BenchTransmitter> cables;
+
+		public BenchNetwork network;
+
+		public boolean orphaned = true;
+
+		public boolean valid = true;
+
+		public BenchTransmitter(Coord4D coord, HashMap<Coord4D, BenchTransmitter> allCables)
+		{
+			location = coord;
+			cables = allCables;
+		}
+
+		@Override
+		public TransmissionType getTransmissionType()
+		{
+			return TransmissionType.ENERGY;
+		}
+
+		@Override
+		public boolean hasTransmitterNetwork()
+		{
+			return network != null;
+		}
+
+		@Override
+		public BenchNetwork getTransmitterNetwork()
+		{
+			return network;
+		}
+
+		@Override
+		public void setTransmitterNetwork(BenchNetwork net)
+		{
+			network = net;
+			orphaned = net == null;
+		}
+
+		@Override
+		public int getTransmitterNetworkSize()
+		{
+			return network != null ? network.getSize() : 0;
+		}
+
+		@Override
+		public int getTransmitterNetworkAcceptorSize()
+		{
+			return 0;
+		}
+
+		@Override
+		public String getTransmitterNetworkNeeded()
+		{
+			return "";
+		}
+
+		@Override
+		public String getTransmitterNetworkFlow()
+		{
+			return "";
+		}
+
+		@Override
+		public String getTransmitterNetworkBuffer()
+		{
+			return "";
+		}
+
+		@Override
+		public double getTransmitterNetworkCapacity()
+		{
+			return 0;
+		}
+
+		@Override
+		public int getCapacity()
+		{
+			return 1;
+		}
+
+		@Override
+		public World world()
+		{
+			return null;
+		}
+
+		@Override
+		public Coord4D coord()
+		{
+			return location;
+		}
+
+		@Override
+		public Coord4D getAdjacentConnectableTransmitterCoord(ForgeDirection side)
+		{
+			Coord4D sideCoord = location.getFromSide(side);
+			return cables.containsKey(sideCoord) ? sideCoord : null;
+		}
+
+		@Override
+		public Object getAcceptor(ForgeDirection side)
+		{
+			return null;
+		}
+
+		@Override
+		public boolean isValid()
+		{
+			return valid;
+		}
+
+		@Override
+		public boolean isOrphan()
+		{
+			return orphaned;
+		}
+
+		@Override
+		public void setOrphan(boolean orphan)
+		{
+			orphaned = orphan;
+		}
+
+		@Override
+		public BenchNetwork createEmptyNetwork()
+		{
+			return new BenchNetwork();
+		}
+
+		@Override
+		public BenchNetwork mergeNetworks(Collection<BenchNetwork> toMerge)
+		{
+			BenchNetwork merged = new BenchNetwork();
+
+			for(BenchNetwork net : toMerge)
+			{
+				merged.adoptTransmittersAndAcceptorsFrom(net);
+			}
+
+			return merged;
+		}
+
+		@Override
+		public BenchNetwork getExternalNetwork(Coord4D from)
+		{
+			BenchTransmitter cable = cables.get(from);
+			return cable != null ? cable.network : null;
+		}
+
+		@Override
+		public void takeShare() {}
+
+		@Override
+		public Object getBuffer()
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Looks transmitters up in the cable map rather than in a world.
+	 */
+	public static class BenchSplitter extends NetworkSplitter<Object, BenchNetwork>
+	{
+		public HashMap<Coord4D, BenchTransmitter> cables;
+
+		public BenchSplitter(BenchNetwork net, Map<IGridTransmitter<Object, BenchNetwork>, Coord4D> changedTransmitters, HashMap<Coord4D, BenchTransmitter> allCables)
+		{
+			super(net, changedTransmitters);
+			cables = allCables;
+		}
+
+		@Override
+		protected IGridTransmitter<Object, BenchNetwork> getTransmitter(Coord4D coord)
+		{
+			return cables.get(coord);
+		}
+	}
+
+	/**
+	 * A network that only keeps track of its transmitters; it is never registered or ticked.
+	 */
+	public static class BenchNetwork extends DynamicNetwork<Object, BenchNetwork>
+	{
+		@Override
+		public void absorbBuffer(IGridTransmitter<Object, BenchNetwork> transmitter) {}
+
+		@Override
+		public void clampBuffer() {}
+
+		@Override
+		public Set<Object> getAcceptors(Object data)
+		{
+			return null;
+		}
+
+		@Override
+		public String getNeededInfo()
+		{
+			return "";
+		}
+
+		@Override
+		public String getStoredInfo()
+		{
+			return "";
+		}
+
+		@Override
+		public String getFlowInfo()
+		{
+			return "";
+		}
+	}
+}
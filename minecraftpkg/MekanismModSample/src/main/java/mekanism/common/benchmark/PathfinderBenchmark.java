@@ -0,0 +1,226 @@
+package mekanism.common.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import mekanism.api.Coord4D;
+import mekanism.api.util.LongHashSet;
+import mekanism.common.content.transporter.TransporterPathfinder.Pathfinder;
+import net.minecraftforge.common.util.ForgeDirection;
+
+/**
+ * Benchmark of logistical transporter pathfinding, run with '/mk benchmark pathfinder' in debug mode. Transporters are generated
+ * into an in-memory maze instead of a world, and the pathfinder is compared with the HashMap based search it replaced.
+ */
+public class PathfinderBenchmark
+{
+	public static final int Y = 64;
+
+	/** Largest maze the command builds, as the legacy search it is compared with slows down quickly. */
+	public static final int MAX_SIZE = 128;
+
+	/**
+	 * Times finding the way through a maze of transporters from one corner to an inventory past the opposite corner.
+	 * The maze is a random spanning tree of size x size cells with a tenth of the remaining walls knocked out, so
+	 * there is more than one way through and the search has to weigh them.
+	 * @param size - number of maze cells along each side
+	 * @return a line describing the result
+	 */
+	public static String runMaze(int size)
+	{
+		LongHashSet maze = createMaze(size, new Random(size));
+		Coord4D start = new Coord4D(0, Y, 0, 0);
+		Coord4D dest = new Coord4D(2*size-1, Y, 2*size-2, 0);
+
+		long best = Long.MAX_VALUE;
+		long legacyBest = Long.MAX_VALUE;
+		int length = 0;
+		int legacyLength = 0;
+
+		for(int run = 0; run < NetworkBenchmark.RUNS; run++)
+		{
+			long startTime = System.nanoTime();
+			BenchPathfinder pathfinder = new BenchPathfinder(maze, dest, start);
+			best = Math.min(best, System.nanoTime()-startTime);
+			length = pathfinder.getPath().size();
+
+			startTime = System.nanoTime();
+			LegacyPathfinder legacy = new LegacyPathfinder(maze, dest, start);
+			legacyBest = Math.min(legacyBest, System.nanoTime()-startTime);
+			legacyLength = legacy.results.size()+1;
+		}
+
+		return "Path through " + size + "x" + size + " maze (" + maze.size() + " transporters, path " + length + " long): best " + NetworkBenchmark.formatMillis(best) +
+				", HashMap search best " + NetworkBenchmark.formatMillis(legacyBest) + " (path " + legacyLength + " long)";
+	}
+
+	/**
+	 * Carves a maze into a single layer with a randomized depth-first search. Cells sit on even coordinates and the
+	 * passages between them on the odd coordinates in between.
+	 * @param size - number of maze cells along each side
+	 * @param random - source of the maze's layout
+	 * @return the packed locations of the maze's transporters
+	 */
+	public static LongHashSet createMaze(int size, Random random)
+	{
+		LongHashSet maze = new LongHashSet(size*size*2);
+		boolean[] visited = new boolean[size*size];
+		int[] stack = new int[size*size];
+		int depth = 0;
+
+		stack[depth++] = 0;
+		visited[0] = true;
+		maze.add(Coord4D.pack(0, Y, 0));
+
+		int[] options = new int[4];
+
+		while(depth > 0)
+		{
+			int cell = stack[depth-1];
+			int x = cell % size, z = cell / size;
+			int count = 0;
+
+			if(x > 0 && !visited[cell-1]) options[count++] = cell-1;
+			if(x < size-1 && !visited[cell+1]) options[count++] = cell+1;
+			if(z > 0 && !visited[cell-size]) options[count++] = cell-size;
+			if(z < size-1 && !visited[cell+size]) options[count++] = cell+size;
+
+			if(count == 0)
+			{
+				depth--;
+				continue;
+			}
+
+			int next = options[random.nextInt(count)];
+			int nextX = next % size, nextZ = next / size;
+
+			visited[next] = true;
+			maze.add(Coord4D.pack(x+nextX, Y, z+nextZ));
+			maze.add(Coord4D.pack(2*nextX, Y, 2*nextZ));
+			stack[depth++] = next;
+		}
+
+		for(int x = 0; x < 2*size-1; x++)
+		{
+			for(int z = (x+1) % 2; z < 2*size-1; z += 2)
+			{
+				if(random.nextInt(10) == 0)
+				{
+					maze.add(Coord4D.pack(x, Y, z));
+				}
+			}
+		}
+
+		return maze;
+	}
+
+	public static class BenchPathfinder extends Pathfinder
+	{
+		public LongHashSet maze;
+
+		public BenchPathfinder(LongHashSet transporters, Coord4D finishObj, Coord4D startObj)
+		{
+			super(null, null, finishObj, startObj, null, false);
+
+			maze = transporters;
+			find(start);
+		}
+
+		@Override
+		protected double getCost(long pos, ForgeDirection direction)
+		{
+			return maze.contains(pos) ? 1 : -1;
+		}
+
+		@Override
+		protected boolean isDestination(long pos, ForgeDirection direction)
+		{
+			return true;
+		}
+	}
+
+	/**
+	 * The A* search transporters used before, with boxed coordinates and scores and a linear scan of the open set.
+	 */
+	public static class LegacyPathfinder
+	{
+		public Set<Coord4D> openSet = new HashSet<Coord4D>(), closedSet = new HashSet<Coord4D>();
+
+		public HashMap<Coord4D, Coord4D> navMap = new HashMap<Coord4D, Coord4D>();
+
+		public HashMap<Coord4D, Double> gScore = new HashMap<Coord4D, Double>(), fScore = new HashMap<Coord4D, Double>();
+
+		public LongHashSet maze;
+
+		public Coord4D finalNode;
+
+		public List<Coord4D> results = new ArrayList<Coord4D>();
+
+		public LegacyPathfinder(LongHashSet transporters, Coord4D finishObj, Coord4D start)
+		{
+			maze = transporters;
+			finalNode = finishObj;
+
+			openSet.add(start);
+			gScore.put(start, 0D);
+			fScore.put(start, (double)start.distanceTo(finalNode));
+
+			while(!openSet.isEmpty())
+			{
+				Coord4D currentNode = null;
+				double lowestFScore = 0;
+
+				for(Coord4D node : openSet)
+				{
+					if(currentNode == null || fScore.get(node) < lowestFScore)
+					{
+						currentNode = node;
+						lowestFScore = fScore.get(node);
+					}
+				}
+
+				openSet.remove(currentNode);
+				closedSet.add(currentNode);
+
+				for(ForgeDirection direction : ForgeDirection.VALID_DIRECTIONS)
+				{
+					Coord4D neighbor = currentNode.getFromSide(direction);
+
+					if(maze.contains(neighbor.toLong()))
+					{
+						double tentativeG = gScore.get(currentNode) + 1;
+
+						if(closedSet.contains(neighbor))
+						{
+							if(tentativeG >= gScore.get(neighbor))
+							{
+								continue;
+							}
+						}
+
+						if(!openSet.contains(neighbor) || tentativeG < gScore.get(neighbor))
+						{
+							navMap.put(neighbor, currentNode);
+							gScore.put(neighbor, tentativeG);
+							fScore.put(neighbor, gScore.get(neighbor) + neighbor.distanceTo(finalNode));
+							openSet.add(neighbor);
+						}
+					}
+					else if(neighbor.equals(finalNode))
+					{
+						for(Coord4D node = currentNode; node != null; node = navMap.get(node))
+						{
+							results.add(node);
+						}
+
+						return;
+					}
+				}
+			}
+		}
+	}
+}
@@ -2,8 +2,10 @@ package mekanism.common.content.transporter;
 
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import mekanism.api.Coord4D;
 
@@ -12,10 +14,41 @@ import net.minecraftforge.common.util.ForgeDirection;
 public class PathfinderCache 
 {
 	public static Map<PathData, List<Coord4D>> cachedPaths = new HashMap<PathData, List<Coord4D>>();
-	
+
+	/** Cached paths by every location they pass through, destination included. */
+	public static Map<Coord4D, Set<PathData>> pathsByLocation = new HashMap<Coord4D, Set<PathData>>();
+
+	public static long hits = 0;
+	public static long misses = 0;
+	public static long invalidated = 0;
+
+	/**
+	 * Drops the cached paths that pass through or next to the changed location. Paths elsewhere stay valid; they may
+	 * only miss a shorter route until something along them changes.
+	 * @param location - location of the transporter or inventory that changed
+	 */
 	public static void onChanged(Coord4D location)
 	{
-		reset();
+		invalidate(location);
+
+		for(ForgeDirection side : ForgeDirection.VALID_DIRECTIONS)
+		{
+			invalidate(location.getFromSide(side));
+		}
+	}
+
+	private static void invalidate(Coord4D location)
+	{
+		Set<PathData> paths = pathsByLocation.get(location);
+
+		if(paths != null)
+		{
+			for(PathData data : paths.toArray(new PathData[paths.size()]))
+			{
+				removeCachedPath(data);
+				invalidated++;
+			}
+		}
 	}
 	
 	public static List<Coord4D> getCache(Coord4D start, Coord4D end, EnumSet<ForgeDirection> sides)
@@ -34,12 +67,72 @@ public class PathfinderCache
 			}
 		}
 		
+		if(ret != null)
+		{
+			hits++;
+		}
+		else {
+			misses++;
+		}
+
 		return ret;
 	}
-	
+
+	public static void addCachedPath(PathData data, List<Coord4D> path)
+	{
+		removeCachedPath(data);
+		cachedPaths.put(data, path);
+
+		for(Coord4D coord : path)
+		{
+			Set<PathData> paths = pathsByLocation.get(coord);
+
+			if(paths == null)
+			{
+				paths = new HashSet<PathData>();
+				pathsByLocation.put(coord, paths);
+			}
+
+			paths.add(data);
+		}
+	}
+
+	public static void removeCachedPath(PathData data)
+	{
+		List<Coord4D> path = cachedPaths.remove(data);
+
+		if(path == null)
+		{
+			return;
+		}
+
+		for(Coord4D coord : path)
+		{
+			Set<PathData> paths = pathsByLocation.get(coord);
+
+			if(paths != null && paths.remove(data) && paths.isEmpty())
+			{
+				pathsByLocation.remove(coord);
+			}
+		}
+	}
+
+	public static String getStats()
+	{
+		long lookups = hits+misses;
+
+		return cachedPaths.size() + " paths through " + pathsByLocation.size() + " locations, " + hits + " hits, " + misses + " misses (" +
+				(lookups > 0 ? hits*100/lookups : 0) + "% hit rate), " + invalidated + " invalidated";
+	}
+
 	public static void reset()
 	{
 		cachedPaths.clear();
+		pathsByLocation.clear();
+
+		hits = 0;
+		misses = 0;
+		invalidated = 0;
 	}
 	
 	public static class PathData
@@ -1,15 +1,15 @@
 package mekanism.common.content.transporter;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import mekanism.api.Coord4D;
+import mekanism.api.util.LongIntHashMap;
 import mekanism.common.InventoryNetwork;
 import mekanism.common.InventoryNetwork.AcceptorData;
 import mekanism.common.base.ILogisticalTransporter;
@@ -22,6 +22,7 @@ import mekanism.common.util.InventoryUtils;
 
 import net.minecraft.item.ItemStack;
 import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.MathHelper;
 import net.minecraft.world.World;
 import net.minecraftforge.common.util.ForgeDirection;
 
@@ -266,7 +267,7 @@ public final class TransporterPathfinder
 		{
 			if(TransporterManager.getToUse(stack.itemStack, rejects).stackSize >= min)
 			{
-				PathfinderCache.cachedPaths.put(new PathData(start.coord(), dest, p.side), p.getPath());
+				PathfinderCache.addCachedPath(new PathData(start.coord(), dest, p.side), p.getPath());
 				
 				return new Destination(p.getPath(), false, rejects, p.finalScore);
 			}
@@ -337,14 +338,12 @@ public final class TransporterPathfinder
 		return closest;
 	}
 
+	/**
+	 * A* search from a transporter to a destination. Blocks are known by packed coordinates and given consecutive
+	 * node indices, so scores and links live in primitive arrays and the open set is a binary heap ordered by f score.
+	 */
 	public static class Pathfinder
 	{
-		public final Set<Coord4D> openSet, closedSet;
-
-		public final HashMap<Coord4D, Coord4D> navMap;
-
-		public final HashMap<Coord4D, Double> gScore, fScore;
-
 		public final Coord4D start;
 
 		public final Coord4D finalNode;
@@ -361,7 +360,32 @@ public final class TransporterPathfinder
 
 		private World worldObj;
 
+		private LongIntHashMap nodes = new LongIntHashMap();
+
+		private long[] nodeCoords = new long[64];
+
+		private int[] parents = new int[64];
+
+		private double[] gScore = new double[64], fScore = new double[64];
+
+		/** Position of each node in the open heap, or -1 while it isn't open. */
+		private int[] heapIndex = new int[64];
+
+		private int nodeCount = 0;
+
+		private int[] heap = new int[64];
+
+		private int heapSize = 0;
+
 		public Pathfinder(DestChecker checker, World world, Coord4D finishObj, Coord4D startObj, TransporterStack stack)
+		{
+			this(checker, world, finishObj, startObj, stack, true);
+		}
+
+		/**
+		 * @param search - whether to search right away; subclasses overriding the world lookups call find() themselves
+		 */
+		protected Pathfinder(DestChecker checker, World world, Coord4D finishObj, Coord4D startObj, TransporterStack stack, boolean search)
 		{
 			destChecker = checker;
 			worldObj = world;
@@ -371,33 +395,26 @@ public final class TransporterPathfinder
 
 			transportStack = stack;
 
-			openSet = new HashSet<Coord4D>();
-			closedSet = new HashSet<Coord4D>();
-
-			navMap = new HashMap<Coord4D, Coord4D>();
-
-			gScore = new HashMap<Coord4D, Double>();
-			fScore = new HashMap<Coord4D, Double>();
-
 			results = new ArrayList<Coord4D>();
 
-			find(start);
+			if(search)
+			{
+				find(start);
+			}
 		}
 
 		public boolean find(Coord4D start)
 		{
-			openSet.add(start);
-			gScore.put(start, 0D);
-			fScore.put(start, gScore.get(start) + getEstimate(start, finalNode));
+			long startPos = start.toLong();
+			long finalPos = finalNode.toLong();
 
 			int blockCount = 0;
 
-			for(int i = 0; i < 6; i++)
+			for(ForgeDirection direction : ForgeDirection.VALID_DIRECTIONS)
 			{
-				ForgeDirection direction = ForgeDirection.getOrientation(i);
-				Coord4D neighbor = start.getFromSide(direction);
+				long neighbor = Coord4D.offset(startPos, direction);
 
-				if(!transportStack.canInsertToTransporter(neighbor.getTileEntity(worldObj), direction) && (!neighbor.equals(finalNode) || !destChecker.isValid(transportStack, i, neighbor.getTileEntity(worldObj))))
+				if(getCost(neighbor, direction) < 0 && (neighbor != finalPos || !isDestination(neighbor, direction)))
 				{
 					blockCount++;
 				}
@@ -408,59 +425,51 @@ public final class TransporterPathfinder
 				return false;
 			}
 
-			double maxSearchDistance = start.distanceTo(finalNode) * 2;
+			int startNode = addNode(startPos);
+			gScore[startNode] = 0;
+			fScore[startNode] = getEstimate(startPos, finalPos);
+			push(startNode);
 
-			while(!openSet.isEmpty())
+			while(heapSize > 0)
 			{
-				Coord4D currentNode = null;
-				double lowestFScore = 0;
-
-				for(Coord4D node : openSet)
-				{
-					if(currentNode == null || fScore.get(node) < lowestFScore)
-					{
-						currentNode = node;
-						lowestFScore = fScore.get(node);
-					}
-				}
-
-				if(currentNode == null && start.distanceTo(currentNode) > maxSearchDistance)
-				{
-					break;
-				}
-
-				openSet.remove(currentNode);
-				closedSet.add(currentNode);
+				int currentNode = pop();
+				long currentPos = nodeCoords[currentNode];
 
 				for(ForgeDirection direction : ForgeDirection.VALID_DIRECTIONS)
 				{
-					Coord4D neighbor = currentNode.getFromSide(direction);
+					long neighborPos = Coord4D.offset(currentPos, direction);
+					double cost = getCost(neighborPos, direction);
 
-					if(transportStack.canInsertToTransporter(neighbor.getTileEntity(worldObj), direction))
+					if(cost >= 0)
 					{
-						TileEntity tile = neighbor.getTileEntity(worldObj);
-						double tentativeG = gScore.get(currentNode) + ((ITransporterTile)tile).getTransmitter().getCost();
+						double tentativeG = gScore[currentNode] + cost;
+						int neighbor = nodes.get(neighborPos, -1);
 
-						if(closedSet.contains(neighbor))
+						if(neighbor == -1)
 						{
-							if(tentativeG >= gScore.get(neighbor))
-							{
-								continue;
-							}
+							neighbor = addNode(neighborPos);
 						}
+						else if(tentativeG >= gScore[neighbor])
+						{
+							continue;
+						}
+
+						parents[neighbor] = currentNode;
+						gScore[neighbor] = tentativeG;
+						fScore[neighbor] = tentativeG + getEstimate(neighborPos, finalPos);
 
-						if(!openSet.contains(neighbor) || tentativeG < gScore.get(neighbor))
+						if(heapIndex[neighbor] == -1)
 						{
-							navMap.put(neighbor, currentNode);
-							gScore.put(neighbor, tentativeG);
-							fScore.put(neighbor, gScore.get(neighbor) + getEstimate(neighbor, finalNode));
-							openSet.add(neighbor);
+							push(neighbor);
+						}
+						else {
+							siftUp(heapIndex[neighbor]);
 						}
 					}
-					else if(neighbor.equals(finalNode) && destChecker.isValid(transportStack, direction.ordinal(), neighbor.getTileEntity(worldObj)))
+					else if(neighborPos == finalPos && isDestination(neighborPos, direction))
 					{
 						side = direction;
-						results = reconstructPath(navMap, currentNode);
+						results = reconstructPath(currentNode);
 						return true;
 					}
 				}
@@ -469,18 +478,154 @@ public final class TransporterPathfinder
 			return false;
 		}
 
-		private ArrayList<Coord4D> reconstructPath(HashMap<Coord4D, Coord4D> naviMap, Coord4D currentNode)
+		/**
+		 * Gets the cost of moving into a block, checked for every neighbour the search expands to.
+		 * @param pos - packed coordinates of the block
+		 * @param direction - direction the block is entered in
+		 * @return the cost of the transporter there, or a negative value if the stack can't enter the block
+		 */
+		protected double getCost(long pos, ForgeDirection direction)
 		{
-			ArrayList<Coord4D> path = new ArrayList<Coord4D>();
+			TileEntity tile = getTileEntity(pos);
+
+			if(transportStack.canInsertToTransporter(tile, direction))
+			{
+				return ((ITransporterTile)tile).getTransmitter().getCost();
+			}
+
+			return -1;
+		}
+
+		/**
+		 * Checks if the stack can be delivered to the destination block.
+		 * @param pos - packed coordinates of the destination
+		 * @param direction - direction the destination is entered in
+		 * @return if the destination accepts the stack
+		 */
+		protected boolean isDestination(long pos, ForgeDirection direction)
+		{
+			return destChecker.isValid(transportStack, direction.ordinal(), getTileEntity(pos));
+		}
+
+		private TileEntity getTileEntity(long pos)
+		{
+			return Coord4D.fromLong(pos, start.dimensionId).getTileEntity(worldObj);
+		}
+
+		private int addNode(long pos)
+		{
+			if(nodeCount == nodeCoords.length)
+			{
+				int length = nodeCount*2;
+
+				nodeCoords = Arrays.copyOf(nodeCoords, length);
+				parents = Arrays.copyOf(parents, length);
+				gScore = Arrays.copyOf(gScore, length);
+				fScore = Arrays.copyOf(fScore, length);
+				heapIndex = Arrays.copyOf(heapIndex, length);
+			}
+
+			int node = nodeCount++;
 
-			path.add(currentNode);
+			nodes.put(pos, node);
+			nodeCoords[node] = pos;
+			parents[node] = -1;
+			heapIndex[node] = -1;
+
+			return node;
+		}
+
+		private void push(int node)
+		{
+			if(heapSize == heap.length)
+			{
+				heap = Arrays.copyOf(heap, heapSize*2);
+			}
+
+			heap[heapSize] = node;
+			heapIndex[node] = heapSize;
+			siftUp(heapSize++);
+		}
+
+		private int pop()
+		{
+			int node = heap[0];
+			heapIndex[node] = -1;
+
+			if(--heapSize > 0)
+			{
+				heap[0] = heap[heapSize];
+				heapIndex[heap[0]] = 0;
+				siftDown(0);
+			}
+
+			return node;
+		}
+
+		private void siftUp(int index)
+		{
+			int node = heap[index];
+
+			while(index > 0)
+			{
+				int parent = (index-1) >>> 1;
+
+				if(fScore[heap[parent]] <= fScore[node])
+				{
+					break;
+				}
+
+				heap[index] = heap[parent];
+				heapIndex[heap[index]] = index;
+				index = parent;
+			}
+
+			heap[index] = node;
+			heapIndex[node] = index;
+		}
+
+		private void siftDown(int index)
+		{
+			int node = heap[index];
+
+			while(true)
+			{
+				int child = 2*index + 1;
+
+				if(child >= heapSize)
+				{
+					break;
+				}
+
+				if(child+1 < heapSize && fScore[heap[child+1]] < fScore[heap[child]])
+				{
+					child++;
+				}
+
+				if(fScore[node] <= fScore[heap[child]])
+				{
+					break;
+				}
+
+				heap[index] = heap[child];
+				heapIndex[heap[index]] = index;
+				index = child;
+			}
+
+			heap[index] = node;
+			heapIndex[node] = index;
+		}
+
+		private ArrayList<Coord4D> reconstructPath(int currentNode)
+		{
+			ArrayList<Coord4D> path = new ArrayList<Coord4D>();
 
-			if(naviMap.containsKey(currentNode))
+			for(int node = currentNode; node != -1; node = parents[node])
 			{
-				path.addAll(reconstructPath(naviMap, naviMap.get(currentNode)));
+				path.add(Coord4D.fromLong(nodeCoords[node], start.dimensionId));
 			}
 
-			finalScore = gScore.get(currentNode) + currentNode.distanceTo(finalNode);
+			finalScore = gScore[currentNode] + getEstimate(nodeCoords[currentNode], finalNode.toLong());
 
 			return path;
 		}
@@ -494,9 +639,15 @@ public final class TransporterPathfinder
 			return path;
 		}
 
-		private double getEstimate(Coord4D start, Coord4D target2)
+		/**
+		 * Same as Coord4D.distanceTo(), without unpacking to Coord4Ds.
+		 */
+		private static double getEstimate(long pos, long target)
 		{
-			return start.distanceTo(target2);
+			int subX = Coord4D.unpackX(pos) - Coord4D.unpackX(target);
+			int subY = Coord4D.unpackY(pos) - Coord4D.unpackY(target);
+			int subZ = Coord4D.unpackZ(pos) - Coord4D.unpackZ(target);
+			return (int)MathHelper.sqrt_double(subX * subX + subY * subY + subZ * subZ);
 		}
 
 		public static class DestChecker
@@ -63,6 +63,8 @@ public abstract class PartTransmitter<A, N extends DynamicNetwork<A, N>> extends
 	{
 		if(!world().isRemote)
 		{
+			//Its share of the buffer leaves with it, as on chunk unload, rather than staying with the network's remainder
+			getTransmitter().takeShare();
 			TransmitterNetworkRegistry.invalidateTransmitter(getTransmitter());
 		}
 		else {
@@ -473,7 +473,7 @@ public class TileEntityFluidicPlenisher extends TileEntityElectricBlock implemen
 	{
 		if(from == ForgeDirection.UP && resource.getFluid().canBePlacedInWorld())
 		{
-			return fluidTank.fill(resource, true);
+			return fluidTank.fill(resource, doFill);
 		}
 		
 		return 0;
@@ -247,9 +247,9 @@ public class TileEntityGasGenerator extends TileEntityGenerator implements IGasH
 		
 		if(isTankEmpty || fuelTank.getGas().isGasEqual(stack))
 		{
-			int fuelReceived = fuelTank.receive(stack, true);
+			int fuelReceived = fuelTank.receive(stack, doTransfer);
 			
-			if(isTankEmpty && fuelReceived > 0) 
+			if(doTransfer && isTankEmpty && fuelReceived > 0) 
 			{
 				output = FuelHandler.getFuel(fuelTank.getGas().getGas()).energyPerTick*2;
 			}